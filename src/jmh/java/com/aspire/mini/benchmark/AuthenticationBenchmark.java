@@ -0,0 +1,59 @@
+package com.aspire.mini.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
+import com.aspire.mini.service.UserService;
+import com.aspire.mini.service.impl.UserServiceImpl;
+import com.aspire.mini.utility.AppUtils;
+import com.aspire.mini.utility.PasswordHasher;
+
+/**
+ * A whole login, password check and token issuance, at different password
+ * hashing costs. The password check recomputes the PBKDF2 hash, so its
+ * iteration count sets the CPU cost of every login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private static final String EMAIL = "sample@example.com";
+
+    private static final String PASSWORD = "pa$$word";
+
+    @Param({ "1000", "10000", "100000" })
+    private int hashIterations;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        AppUtils appUtils = new AppUtils(1, "fhbfjsbfjjhewjfbefbjhwehjfrebfjfhbjherbhjerbwhjfbhjrefb",
+                "http://mini-aspire.com", "primary", "", 10000);
+        userService = new UserServiceImpl(new InMemoryUserRepository(), appUtils, new NoOpJournal(),
+                new PasswordHasher(hashIterations));
+        userService.createUser(EMAIL, PASSWORD, false);
+    }
+
+    @Benchmark
+    public String authenticateUser() {
+        return userService.authenticateUser(EMAIL, PASSWORD);
+    }
+}
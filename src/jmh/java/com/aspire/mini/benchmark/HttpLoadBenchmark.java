@@ -0,0 +1,149 @@
+package com.aspire.mini.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.aspire.mini.MiniApplication;
+
+/**
+ * Load test of the authentication and loan endpoints over HTTP, with many more
+ * concurrent clients than Tomcat has platform threads, handling requests on
+ * the platform thread pool and on virtual threads. Loan requests wait for the
+ * journal to be synced to disk, the kind of blocking that ties up a platform
+ * thread. Batch repayments wait for the journal without holding a request
+ * thread in either mode; lowering tomcatMaxThreads shows which endpoints are
+ * bound by the size of the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(400)
+public class HttpLoadBenchmark {
+
+    private static final String ADMIN_CREDENTIALS = "{\"email\":\"admin@mini-aspire.com\",\"password\":\"admin\"}";
+
+    private static final String LOAN_REQUEST = "{\"loanAmount\":\"1000.00\",\"loanStartDate\":\"2023-09-01\",\"loanTerm\":52}";
+
+    private static final int REPAID_LOANS = 100;
+
+    @Param({ "platform", "virtual" })
+    private String threadMode;
+
+    @Param({ "200" })
+    private int tomcatMaxThreads;
+
+    private Path directory;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private URI baseUri;
+
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("http-load-benchmark");
+        context = new SpringApplicationBuilder(MiniApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + threadMode.equals("virtual"),
+                        "server.tomcat.threads.max=" + tomcatMaxThreads,
+                        "journal.enabled=true",
+                        "journal.path=" + directory.resolve("journal"),
+                        "snapshot.enabled=false",
+                        "logging.level.com.aspire.mini=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUri = URI.create("http://localhost:" + port + "/api/v1/");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        token = authenticate();
+        for (int i = 0; i < REPAID_LOANS; i++) {
+            requestLoan();
+        }
+        send(HttpRequest.newBuilder(baseUri.resolve("loans/approve"))
+                .header("Authorization", token)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"startDateFrom\":\"2023-09-01\"}")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public String authenticate() throws Exception {
+        return send(HttpRequest.newBuilder(baseUri.resolve("users/authenticate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(ADMIN_CREDENTIALS)));
+    }
+
+    @Benchmark
+    public String requestLoan() throws Exception {
+        return send(HttpRequest.newBuilder(baseUri.resolve("loans"))
+                .header("Authorization", token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(LOAN_REQUEST)));
+    }
+
+    @Benchmark
+    public String getLoans() throws Exception {
+        return send(HttpRequest.newBuilder(baseUri.resolve("loans?limit=20&includePayments=false"))
+                .header("Authorization", token)
+                .GET());
+    }
+
+    @Benchmark
+    public String repayLoans() throws Exception {
+        int loanId = ThreadLocalRandom.current().nextInt(REPAID_LOANS) + 1;
+        return send(HttpRequest.newBuilder(baseUri.resolve("loans/repay"))
+                .header("Authorization", token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[{\"loanId\":" + loanId
+                        + ",\"email\":\"admin@mini-aspire.com\",\"paymentDate\":\"2023-09-08\",\"amount\":\"0.01\"}]")));
+    }
+
+    private String send(HttpRequest.Builder request) throws Exception {
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " from " + response.uri());
+        }
+        return response.body();
+    }
+}
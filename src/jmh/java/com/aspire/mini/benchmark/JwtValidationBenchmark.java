@@ -0,0 +1,58 @@
+package com.aspire.mini.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.enums.UserRole;
+import com.aspire.mini.utility.AppUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+
+/**
+ * Token validation with the verification cache disabled (a cache size of zero)
+ * and enabled, and token issuance for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtValidationBenchmark {
+
+    @Param({ "0", "10000" })
+    private int tokenCacheSize;
+
+    private AppUtils appUtils;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        appUtils = new AppUtils(1, "fhbfjsbfjjhewjfbefbjhwehjfrebfjfhbjherbhjerbwhjfbhjrefb", "http://mini-aspire.com",
+                "primary", "", tokenCacheSize);
+        token = appUtils.issueToken("sample@example.com", UserRole.BASIC);
+    }
+
+    @Benchmark
+    public Jws<Claims> validateJWTAndReturnClaims() {
+        return appUtils.validateJWTAndReturnClaims(token);
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return appUtils.issueToken("sample@example.com", UserRole.BASIC);
+    }
+}
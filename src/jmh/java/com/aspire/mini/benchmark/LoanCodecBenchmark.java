@@ -0,0 +1,108 @@
+package com.aspire.mini.benchmark;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.mapper.LoanMapper;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.Payment;
+import com.aspire.mini.model.PaymentSchedule;
+import com.aspire.mini.persistence.LoanCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Encoding and decoding throughput of the binary loan codec, with the JSON
+ * encoding of the same loan's response as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanCodecBenchmark {
+
+    @Param({ "52", "520" })
+    private int loanTerm;
+
+    private ObjectMapper objectMapper;
+
+    private Loan loan;
+
+    private List<Payment> payments;
+
+    private ByteBuffer buffer;
+
+    private ByteBuffer encodedLoan;
+
+    private ByteBuffer encodedPayments;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        LocalDate startDate = LocalDate.of(2023, 9, 1);
+        loan = new Loan("sample@example.com", startDate, LoanStatus.APPROVED, 7, loanTerm);
+        loan.setLoanId(1);
+        loan.setLoanAmount(1000L * loanTerm);
+        loan.setPaymentSchedule(PaymentSchedule.create(1000L * loanTerm, loanTerm, startDate, 7));
+        // one underpayment, so the schedule has a deviation and two segments
+        loan.getPaymentSchedule().payNextInstallmentAndReamortize(500L, 1000L * loanTerm - 500L,
+                startDate.plusDays(3));
+        loan.setRemainingBalance(1000L * loanTerm - 500L);
+        payments = loan.getPayments();
+
+        buffer = ByteBuffer.allocate(Math.max(LoanCodec.maxEncodedSize(loan), LoanCodec.maxEncodedSize(payments)));
+        encodedLoan = ByteBuffer.allocate(LoanCodec.maxEncodedSize(loan));
+        LoanCodec.encode(loan, encodedLoan);
+        encodedLoan.flip();
+        encodedPayments = ByteBuffer.allocate(LoanCodec.maxEncodedSize(payments));
+        LoanCodec.encodePayments(payments, encodedPayments);
+        encodedPayments.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeLoan() {
+        buffer.clear();
+        LoanCodec.encode(loan, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Loan decodeLoan() {
+        return LoanCodec.decode(encodedLoan.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer encodePayments() {
+        buffer.clear();
+        LoanCodec.encodePayments(payments, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public List<Payment> decodePayments() {
+        return LoanCodec.decodePayments(encodedPayments.duplicate());
+    }
+
+    @Benchmark
+    public byte[] encodeLoanResponseAsJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(LoanMapper.toDto(loan));
+    }
+}
@@ -0,0 +1,108 @@
+package com.aspire.mini.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.service.LoanService;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.StripedLock;
+
+/**
+ * Loan ID allocation throughput as the number of requesting threads grows, with
+ * a shared counter (block size 1) and with per-thread reserved blocks, both for
+ * the allocator alone and for whole loan requests through the in-memory
+ * repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoanIdAllocatorBenchmark {
+
+    @Param({ "1", "64" })
+    private int blockSize;
+
+    private LoanIdAllocator loanIdAllocator;
+
+    private LoanService loanService;
+
+    private LoanRequestDTO loanRequestDTO;
+
+    @Setup
+    public void setUp() {
+        loanIdAllocator = new LoanIdAllocator(blockSize);
+        loanRequestDTO = new LoanRequestDTO(5200000L, LocalDate.of(2023, 9, 1), 52);
+    }
+
+    /**
+     * Starts every iteration with an empty loan book, so that the loans created
+     * by earlier iterations neither fill the heap nor slow the indexes down.
+     */
+    @Setup(Level.Iteration)
+    public void openLoanBook() {
+        loanService = new LoanServiceImpl(new InMemoryLoanRepository(), new LoanIdAllocator(blockSize),
+                new StripedLock(64), new NoOpJournal(), LoanLimits.NONE, Runnable::run);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int nextIdOneThread() {
+        return loanIdAllocator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int nextIdFourThreads() {
+        return loanIdAllocator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int nextIdEightThreads() {
+        return loanIdAllocator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public LoanResponseDTO requestLoanOneThread() {
+        return requestLoan();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public LoanResponseDTO requestLoanFourThreads() {
+        return requestLoan();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public LoanResponseDTO requestLoanEightThreads() {
+        return requestLoan();
+    }
+
+    private LoanResponseDTO requestLoan() {
+        return loanService.requestLoan("user" + Thread.currentThread().threadId() + "@example.com", loanRequestDTO);
+    }
+}
@@ -0,0 +1,292 @@
+package com.aspire.mini.benchmark;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.PaymentSchedule;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.service.LoanService;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.StripedLock;
+
+/**
+ * Benchmarks for the LoanService hot paths. Loan book lookups are measured
+ * against books of different sizes, schedule creation and repayment against
+ * different loan terms and payment sizes.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoanServiceBenchmark {
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 9, 1);
+
+    private static final int LOANS_PER_USER = 10;
+
+    private static final long INSTALLMENT = 100000;
+
+    @State(Scope.Benchmark)
+    public static class LoanBook {
+
+        @Param({ "1000", "100000", "1000000" })
+        public int loanCount;
+
+        public LoanService loanService;
+
+        public int userCount;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            loanService = newLoanService(new InMemoryLoanRepository());
+            userCount = Math.max(1, loanCount / LOANS_PER_USER);
+            for (int i = 0; i < loanCount; i++) {
+                loanService.requestLoan(email(i % userCount), new LoanRequestDTO(100000L, START_DATE, 1));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Schedule {
+
+        @Param({ "1", "52", "520" })
+        public int loanTerm;
+
+        public LoanService discardingLoanService;
+
+        public LoanRequestDTO loanRequestDTO;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            discardingLoanService = newLoanService(new DiscardingLoanRepository());
+            loanRequestDTO = new LoanRequestDTO(INSTALLMENT * loanTerm, START_DATE, loanTerm);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Repayment {
+
+        @Param({ "1", "52", "520" })
+        public int loanTerm;
+
+        @Param({ "100000", "150000", "500000", "70000" })
+        public long paymentAmount;
+
+        public LoanService loanService;
+
+        public LoanRequestDTO loanRequestDTO;
+
+        public PaymentRequestDTO paymentRequestDTO;
+
+        public Integer loanId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            loanService = newLoanService(new InMemoryLoanRepository());
+            loanRequestDTO = new LoanRequestDTO(INSTALLMENT * loanTerm, START_DATE, loanTerm);
+            paymentRequestDTO = new PaymentRequestDTO(START_DATE, paymentAmount);
+            openLoan();
+        }
+
+        public void openLoan() {
+            loanId = loanService.requestLoan("sample@example.com", loanRequestDTO).getLoanId();
+            loanService.approveLoan(loanId);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reamortization {
+
+        @Param({ "52", "520" })
+        public int loanTerm;
+
+        public PaymentSchedule schedule;
+
+        public long remainingBalance;
+
+        public void openSchedule() {
+            remainingBalance = INSTALLMENT * loanTerm;
+            schedule = PaymentSchedule.create(remainingBalance, loanTerm, START_DATE, 7);
+        }
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            openSchedule();
+        }
+    }
+
+    @Benchmark
+    public LoanResponseDTO getLoanByIdAndEmail(LoanBook book) {
+        int loanId = ThreadLocalRandom.current().nextInt(book.loanCount) + 1;
+        return book.loanService.getLoanByIdAndEmail(loanId, email((loanId - 1) % book.userCount));
+    }
+
+    @Benchmark
+    public List<LoanResponseDTO> getAllLoansByEmail(LoanBook book) {
+        return book.loanService.getAllLoansByEmail(email(ThreadLocalRandom.current().nextInt(book.userCount)));
+    }
+
+    /**
+     * Loan creation, dominated by building the payment schedule. The created loans
+     * are discarded so that the heap does not grow across iterations.
+     */
+    @Benchmark
+    public LoanResponseDTO requestLoan(Schedule schedule) {
+        return schedule.discardingLoanService.requestLoan("sample@example.com", schedule.loanRequestDTO);
+    }
+
+    /**
+     * A single repayment. Once the loan is closed a new one is opened, which is
+     * included in the measurement but amortized over the loan term.
+     */
+    @Benchmark
+    public LoanResponseDTO repayLoan(Repayment repayment) {
+        LoanResponseDTO repaidLoan = repayment.loanService.repayLoan(repayment.loanId, "sample@example.com",
+                repayment.paymentRequestDTO);
+        if (repaidLoan == null || repaidLoan.getLoanStatus().equals(LoanStatus.PAID)) {
+            repayment.openLoan();
+        }
+        return repaidLoan;
+    }
+
+    /**
+     * A chain of partial payments against the payment schedule alone, without
+     * the locking and response mapping of {@link #repayLoan}. Each payment
+     * re-amortizes the remaining installments.
+     */
+    @Benchmark
+    public PaymentSchedule reamortize(Reamortization reamortization) {
+        PaymentSchedule schedule = reamortization.schedule;
+        if (!schedule.hasPendingInstallment()) {
+            reamortization.openSchedule();
+            schedule = reamortization.schedule;
+        }
+        long amount = schedule.nextInstallmentAmount() - 1;
+        reamortization.remainingBalance -= amount;
+        schedule.payNextInstallmentAndReamortize(amount, reamortization.remainingBalance, START_DATE);
+        return schedule;
+    }
+
+    private static LoanService newLoanService(LoanRepository loanRepository) {
+        return new LoanServiceImpl(loanRepository, new LoanIdAllocator(1), new StripedLock(64),
+                new NoOpJournal(), LoanLimits.NONE, Runnable::run);
+    }
+
+    private static String email(int user) {
+        return "user" + user + "@example.com";
+    }
+
+    private static class DiscardingLoanRepository implements LoanRepository {
+
+        @Override
+        public Loan findById(Integer loanId) {
+            return null;
+        }
+
+        @Override
+        public Collection<Loan> findAll() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllByUserEmail(String email) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllByStatus(LoanStatus status) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllByUserEmailAfter(String email, int loanId) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllByStatusAfter(LoanStatus status, int loanId) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllDueBetween(LocalDate from, LocalDate to) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Loan> findAllWithUnmissedInstallmentDueBefore(LocalDate to) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Loan save(Loan loan) {
+            return loan;
+        }
+
+        @Override
+        public boolean isWithinLimits(String email, long loanAmount, long maxExposure, int maxOpenLoans) {
+            return true;
+        }
+
+        @Override
+        public boolean saveWithinLimits(Loan loan, long maxExposure, int maxOpenLoans) {
+            return true;
+        }
+
+        @Override
+        public void updateStatus(Loan loan, LoanStatus status) {
+            loan.setLoanStatus(status);
+        }
+
+        @Override
+        public void updateSchedule(Loan loan) {
+        }
+
+        @Override
+        public long countByStatus(LoanStatus status) {
+            return 0;
+        }
+
+        @Override
+        public long sumOutstandingBalance() {
+            return 0;
+        }
+
+        @Override
+        public long countPendingInstallments() {
+            return 0;
+        }
+
+        @Override
+        public int count() {
+            return 0;
+        }
+    }
+}
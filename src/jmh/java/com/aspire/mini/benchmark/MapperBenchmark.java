@@ -0,0 +1,80 @@
+package com.aspire.mini.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.dto.response.UserResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.mapper.LoanMapper;
+import com.aspire.mini.mapper.UserMapper;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.PaymentSchedule;
+import com.aspire.mini.model.User;
+
+/**
+ * Compares the hand-written mappers with the reflection based ModelMapper they
+ * replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({ "1", "52", "520" })
+    private int loanTerm;
+
+    private ModelMapper modelMapper;
+
+    private Loan loan;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        LocalDate startDate = LocalDate.of(2023, 9, 1);
+        loan = new Loan("sample@example.com", startDate, LoanStatus.APPROVED, 7, loanTerm);
+        loan.setLoanId(1);
+        loan.setLoanAmount(1000L * loanTerm);
+        loan.setRemainingBalance(1000L * loanTerm);
+        loan.setPaymentSchedule(PaymentSchedule.create(1000L * loanTerm, loanTerm, startDate, 7));
+        user = new User("sample@example.com", "pa$$word", false);
+    }
+
+    @Benchmark
+    public LoanResponseDTO loanWithModelMapper() {
+        return modelMapper.map(loan, LoanResponseDTO.class);
+    }
+
+    @Benchmark
+    public LoanResponseDTO loanWithLoanMapper() {
+        return LoanMapper.toDto(loan);
+    }
+
+    @Benchmark
+    public UserResponseDTO userWithModelMapper() {
+        return modelMapper.map(user, UserResponseDTO.class);
+    }
+
+    @Benchmark
+    public UserResponseDTO userWithUserMapper() {
+        return UserMapper.toDto(user);
+    }
+}
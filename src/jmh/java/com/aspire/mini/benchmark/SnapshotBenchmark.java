@@ -0,0 +1,98 @@
+package com.aspire.mini.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.persistence.Snapshotter;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.StripedLock;
+
+/**
+ * Time to write a snapshot of the loan book and to restore it at startup, for
+ * books of different sizes. Every loan is approved and has one reamortized
+ * repayment, so its schedule has two segments and a deviation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class SnapshotBenchmark {
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 9, 1);
+
+    @Param({ "100000", "1000000" })
+    private int loanCount;
+
+    private Path directory;
+
+    private Snapshotter snapshotter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        LoanRepository loanRepository = new InMemoryLoanRepository();
+        LoanIdAllocator loanIdAllocator = new LoanIdAllocator(1);
+        StripedLock loanLocks = new StripedLock(64);
+        LoanServiceImpl loanService = new LoanServiceImpl(loanRepository, loanIdAllocator, loanLocks,
+                new NoOpJournal(), LoanLimits.NONE, Runnable::run);
+        for (int i = 0; i < loanCount; i++) {
+            String email = "user" + (i / 10) + "@example.com";
+            int loanId = loanService.requestLoan(email, new LoanRequestDTO(5200000L, START_DATE, 52)).getLoanId();
+            loanService.approveLoan(loanId);
+            loanService.repayLoan(loanId, email, new PaymentRequestDTO(START_DATE.plusDays(7), 150000L));
+        }
+        snapshotter = newSnapshotter(loanRepository, loanIdAllocator, loanLocks);
+        snapshotter.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void writeSnapshot() {
+        snapshotter.snapshot();
+    }
+
+    @Benchmark
+    public LoanRepository restoreSnapshot() {
+        LoanRepository loanRepository = new InMemoryLoanRepository();
+        newSnapshotter(loanRepository, new LoanIdAllocator(1), new StripedLock(64)).restore();
+        return loanRepository;
+    }
+
+    private Snapshotter newSnapshotter(LoanRepository loanRepository, LoanIdAllocator loanIdAllocator,
+            StripedLock loanLocks) {
+        return new Snapshotter(loanRepository, new InMemoryUserRepository(), loanLocks, loanIdAllocator,
+                new NoOpJournal(), true, directory.resolve("snapshot").toString());
+    }
+}
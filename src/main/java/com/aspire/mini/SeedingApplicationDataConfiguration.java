@@ -1,35 +1,85 @@
 package com.aspire.mini;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import com.aspire.mini.model.Loan;
 import com.aspire.mini.model.User;
+import com.aspire.mini.persistence.Journal;
+import com.aspire.mini.persistence.impl.FileChannelJournal;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.UserRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.PasswordHasher;
+import com.aspire.mini.utility.StripedLock;
 
 @Configuration
 public class SeedingApplicationDataConfiguration {
 
 	@Bean
-	public List<User> applicationUsers() {
-		final List<User> users = new ArrayList<>();
-		User superUser = new User("admin@mini-aspire.com", "admin", true);
-		users.add(superUser);
+	public UserRepository userRepository(PasswordHasher passwordHasher) {
+		final UserRepository users = new InMemoryUserRepository();
+		User superUser = new User("admin@mini-aspire.com", passwordHasher.hash("admin"), true);
+		users.saveIfAbsent(superUser);
 		return users;
 	}
 
 	@Bean
-	public List<Loan> loans() {
-		final List<Loan> loans = new ArrayList<>();
-		return loans;
+	public LoanRepository loanRepository() {
+		return new InMemoryLoanRepository();
+	}
+
+	@Bean(destroyMethod = "close")
+	public Journal journal(@Value("${journal.enabled:true}") boolean enabled,
+			@Value("${journal.path:data/mini-aspire.journal}") String path,
+			@Value("${journal.fsync:true}") boolean fsync) {
+		return enabled ? new FileChannelJournal(Path.of(path), fsync) : new NoOpJournal();
+	}
+
+	@Bean
+	public LoanIdAllocator loanIdAllocator(@Value("${loan.id.block-size:1}") int blockSize) {
+		return new LoanIdAllocator(blockSize);
+	}
+
+	@Bean
+	public LoanLimits loanLimits(@Value("${loan.limit.max-exposure:0}") BigDecimal maxExposure,
+			@Value("${loan.limit.max-open-loans:0}") int maxOpenLoans) {
+		return new LoanLimits(maxExposure, maxOpenLoans);
+	}
+
+	/**
+	 * The threads that apply the loans of a repayment batch in parallel. Their
+	 * number and queue are bounded, so that batches blocking on loan locks do
+	 * not take over the JVM's common pool; once the queue is full, the request
+	 * thread applies further loans itself.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService repaymentExecutor(@Value("${loan.repay.threads:4}") int threads,
+			@Value("${loan.repay.queue-size:1000}") int queueSize) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "loan-repayment-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
 	}
 
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public StripedLock loanLocks(@Value("${loan.lock.stripes:64}") int stripes) {
+		return new StripedLock(stripes);
 	}
 
 }
@@ -1,41 +1,80 @@
 package com.aspire.mini.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
+import com.aspire.mini.dto.request.ApprovalRequestDTO;
+import com.aspire.mini.dto.request.LoanQueryDTO;
 import com.aspire.mini.dto.request.LoanRequestDTO;
 import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.request.RepaymentRequestDTO;
+import com.aspire.mini.dto.response.ApprovalResponseDTO;
+import com.aspire.mini.dto.response.LoanPageDTO;
 import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.dto.response.PortfolioResponseDTO;
+import com.aspire.mini.dto.response.RepaymentResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
 import com.aspire.mini.enums.UserRole;
+import com.aspire.mini.exception.LoanLimitExceededException;
 import com.aspire.mini.service.LoanService;
 import com.aspire.mini.utility.AppUtils;
+import com.aspire.mini.utility.IdempotencyCache;
 import com.aspire.mini.validator.LoanValidator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/v1/loans")
 public class LoanController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final String ACCEPTED_BEFORE_JOURNAL = "Applied, but not yet written to the journal; "
+            + "repeat the request with the same Idempotency-Key for the results";
+
     private final AppUtils appUtils;
 
     private final LoanService loanService;
 
-    public LoanController(AppUtils appUtils, LoanService loanService) {
+    private final ObjectMapper objectMapper;
+
+    private final IdempotencyCache idempotencyCache;
+
+    public LoanController(AppUtils appUtils, LoanService loanService, ObjectMapper objectMapper,
+            IdempotencyCache idempotencyCache) {
         this.appUtils = appUtils;
         this.loanService = loanService;
+        this.objectMapper = objectMapper;
+        this.idempotencyCache = idempotencyCache;
     }
 
     /**
@@ -69,17 +108,21 @@ public class LoanController {
     }
 
     /**
-     * Request a new loan for a specific user.
+     * Request a new loan for a specific user. A retry sent with the same
+     * Idempotency-Key returns the loan created by the first request. A loan that
+     * would take the user over the loan limits is rejected with 422.
      *
      * @param loanRequestDTO The LoanRequestDTO containing loan request details.
      * @param token          The JWT authorization token.
+     * @param idempotencyKey An optional key identifying retries of the request.
      * @return A ResponseEntity containing the LoanResponseDTO if the loan request
      *         is successful, or a relevant error response.
      */
     @PostMapping()
     public ResponseEntity<?> requestLoan(
             @RequestBody LoanRequestDTO loanRequestDTO,
-            @RequestHeader(name = "Authorization") String token) {
+            @RequestHeader(name = "Authorization") String token,
+            @RequestHeader(name = IdempotencyCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         try {
             LoanValidator.validateLoanRequest(loanRequestDTO);
             Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
@@ -87,56 +130,70 @@ public class LoanController {
                 return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
             }
             String email = String.valueOf(claims.getBody().get("sub"));
-            LoanResponseDTO loanResponseDTO = this.loanService.requestLoan(email, loanRequestDTO);
-            if (loanRequestDTO != null) {
-                return new ResponseEntity<LoanResponseDTO>(loanResponseDTO, HttpStatus.CREATED);
-            } else {
-                return ResponseEntity.internalServerError().build();
-            }
+            return this.idempotencyCache.execute(email + " requestLoan", idempotencyKey, loanRequestDTO, () -> {
+                LoanResponseDTO loanResponseDTO;
+                try {
+                    loanResponseDTO = this.loanService.requestLoan(email, loanRequestDTO);
+                } catch (LoanLimitExceededException e) {
+                    return new ResponseEntity<String>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+                }
+                if (loanResponseDTO != null) {
+                    return new ResponseEntity<LoanResponseDTO>(loanResponseDTO, HttpStatus.CREATED);
+                } else {
+                    return ResponseEntity.internalServerError().build();
+                }
+            });
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * Retrieve all loans associated with the authenticated user.
+     * Retrieve the loans associated with the authenticated user: all of them, or
+     * one page at a time when a limit or cursor is given. The cursor of the next
+     * page, if any, is returned in the X-Next-Cursor header.
      *
-     * @param token The JWT authorization token.
+     * @param loanQueryDTO The cursor, page size and filters.
+     * @param token        The JWT authorization token.
      * @return A ResponseEntity containing a list of LoanResponseDTOs if found, or a
      *         relevant error response.
      */
     @GetMapping()
-    public ResponseEntity<?> getAllLoansByEmail(@RequestHeader(name = "Authorization") String token) {
+    public ResponseEntity<?> getAllLoansByEmail(@ModelAttribute LoanQueryDTO loanQueryDTO,
+            @RequestHeader(name = "Authorization") String token) {
         try {
+            LoanValidator.validateLoanQuery(loanQueryDTO);
             Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
             if (claims == null) {
                 return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
             }
             String email = String.valueOf(claims.getBody().get("sub"));
-            return new ResponseEntity<List<LoanResponseDTO>>(
-                    this.loanService.getAllLoansByEmail(email), HttpStatus.OK);
+            return pageResponse(this.loanService.getLoansByEmail(email, loanQueryDTO));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * Retrieve all pending loans for approval.
+     * Retrieve the pending loans for approval: all of them, or one page at a time
+     * when a limit or cursor is given. The cursor of the next page, if any, is
+     * returned in the X-Next-Cursor header.
      *
-     * @param token The JWT authorization token.
+     * @param loanQueryDTO The cursor, page size and filters.
+     * @param token        The JWT authorization token.
      * @return A ResponseEntity containing a list of LoanResponseDTOs if found, or a
      *         relevant error response.
      */
     @GetMapping(path = "/approve")
-    public ResponseEntity<?> getAllPendingLoans(
+    public ResponseEntity<?> getAllPendingLoans(@ModelAttribute LoanQueryDTO loanQueryDTO,
             @RequestHeader(name = "Authorization") String token) {
         try {
+            LoanValidator.validateLoanQuery(loanQueryDTO);
             Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
             if (claims == null
                     || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString()))
                 return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
-            return new ResponseEntity<List<LoanResponseDTO>>(
-                    this.loanService.getAllPendingLoans(), HttpStatus.OK);
+            return pageResponse(this.loanService.getPendingLoans(loanQueryDTO));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -171,18 +228,48 @@ public class LoanController {
     }
 
     /**
-     * Repay a loan by making a payment for the specified loan.
+     * Approve many pending loans at once, by ID or by filter. The request thread
+     * is released while the approvals are written to the journal.
+     *
+     * @param approvalRequestDTO The loan IDs and/or filters selecting the loans.
+     * @param token              The JWT authorization token.
+     * @return A future ResponseEntity containing the approved and failed loan
+     *         IDs, or a relevant error response.
+     */
+    @PutMapping(path = "/approve")
+    public CompletableFuture<ResponseEntity<?>> approveLoans(@RequestBody ApprovalRequestDTO approvalRequestDTO,
+            @RequestHeader(name = "Authorization") String token) {
+        try {
+            LoanValidator.validateApprovalRequest(approvalRequestDTO);
+            Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
+            if (claims == null
+                    || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString()))
+                return CompletableFuture.completedFuture(
+                        new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED));
+            return whenComplete(this.loanService.approveLoans(approvalRequestDTO));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
+        }
+    }
+
+    /**
+     * Repay a loan by making a payment for the specified loan. A retry sent with
+     * the same Idempotency-Key returns the response of the first request
+     * without paying again.
      *
      * @param id                The unique identifier of the loan to repay.
      * @param paymentRequestDTO The PaymentRequestDTO containing payment details.
      * @param token             The JWT authorization token.
+     * @param idempotencyKey    An optional key identifying retries of the
+     *                          request.
      * @return A ResponseEntity containing the updated LoanResponseDTO if
      *         successful, or a relevant error response.
      */
     @PostMapping(path = "/{id}/repay")
     public ResponseEntity<?> repayLoan(@PathVariable Integer id,
             @RequestBody PaymentRequestDTO paymentRequestDTO,
-            @RequestHeader(name = "Authorization") String token) {
+            @RequestHeader(name = "Authorization") String token,
+            @RequestHeader(name = IdempotencyCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         try {
             LoanValidator.validatePaymentRequest(id, paymentRequestDTO);
             Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
@@ -190,14 +277,178 @@ public class LoanController {
                 return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
             }
             String email = String.valueOf(claims.getBody().get("sub"));
-            LoanResponseDTO repaidLoan = this.loanService.repayLoan(id, email, paymentRequestDTO);
-            if (repaidLoan != null) {
-                return new ResponseEntity<LoanResponseDTO>(repaidLoan, HttpStatus.OK);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
+            return this.idempotencyCache.execute(email + " repayLoan", idempotencyKey,
+                    List.of(id, paymentRequestDTO), () -> {
+                        LoanResponseDTO repaidLoan = this.loanService.repayLoan(id, email, paymentRequestDTO);
+                        if (repaidLoan != null) {
+                            return new ResponseEntity<LoanResponseDTO>(repaidLoan, HttpStatus.OK);
+                        } else {
+                            return ResponseEntity.notFound().build();
+                        }
+                    });
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Repay many loans in one call, e.g. from an end of day reconciliation.
+     * Each repayment names the loan and the email of its owner. The request
+     * thread is released while the repayments are written to the journal. A
+     * retry sent with the same Idempotency-Key returns the results of the first
+     * request without paying again, including when that request was answered
+     * with 202 because the journal had not caught up yet.
+     *
+     * @param repayments     The repayments to apply.
+     * @param token          The JWT authorization token.
+     * @param idempotencyKey An optional key identifying retries of the request.
+     * @return A future ResponseEntity containing one RepaymentResponseDTO per
+     *         repayment, in request order, or a relevant error response.
+     */
+    @PostMapping(path = "/repay")
+    public CompletableFuture<ResponseEntity<?>> repayLoans(@RequestBody List<RepaymentRequestDTO> repayments,
+            @RequestHeader(name = "Authorization") String token,
+            @RequestHeader(name = IdempotencyCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        try {
+            LoanValidator.validateRepaymentBatch(repayments);
+            Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
+            if (claims == null
+                    || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString()))
+                return CompletableFuture.completedFuture(
+                        new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED));
+            String email = String.valueOf(claims.getBody().get("sub"));
+            return this.idempotencyCache.executeAsync(email + " repayLoans", idempotencyKey, repayments,
+                    () -> whenComplete(this.loanService.repayLoans(repayments)));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().build());
+        }
+    }
+
+    /**
+     * Retrieve the approved loans with a pending installment that was due before
+     * a day, today by default, ordered by that installment's due date.
+     *
+     * @param asOf            The day the installments are overdue on, or none
+     *                        for today.
+     * @param includePayments Whether to include each loan's payments.
+     * @param token           The JWT authorization token.
+     * @return A ResponseEntity containing a list of LoanResponseDTOs, or a
+     *         relevant error response.
+     */
+    @GetMapping(path = "/overdue")
+    public ResponseEntity<?> getOverdueLoans(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(defaultValue = "false") boolean includePayments,
+            @RequestHeader(name = "Authorization") String token) {
+        try {
+            Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
+            if (claims == null
+                    || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString()))
+                return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
+            return new ResponseEntity<List<LoanResponseDTO>>(
+                    this.loanService.getOverdueLoans(asOf == null ? LocalDate.now() : asOf, includePayments),
+                    HttpStatus.OK);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Retrieve the portfolio totals: loan counts by status and the outstanding
+     * balance and pending installments of approved loans. The totals are kept
+     * up to date as loans change, so this answers in constant time.
+     *
+     * @param token The JWT authorization token.
+     * @return A ResponseEntity containing a PortfolioResponseDTO, or a relevant
+     *         error response.
+     */
+    @GetMapping(path = "/portfolio")
+    public ResponseEntity<?> getPortfolio(@RequestHeader(name = "Authorization") String token) {
+        try {
+            Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
+            if (claims == null
+                    || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString()))
+                return new ResponseEntity<String>("Unauthorized", HttpStatus.UNAUTHORIZED);
+            return new ResponseEntity<PortfolioResponseDTO>(this.loanService.getPortfolio(), HttpStatus.OK);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Export all loans, or all loans in a status, as newline-delimited JSON. Loans
+     * are written to the response as they are read, so the export runs in
+     * constant memory and at the pace the client reads it. The export is written
+     * on the request thread rather than asynchronously, so that the async request
+     * timeout does not cut large exports off.
+     *
+     * @param status          The status of the loans to export, or none for all
+     *                        loans.
+     * @param includePayments Whether to include each loan's payments.
+     * @param token           The JWT authorization token.
+     * @param response        The response the loans are written to, one
+     *                        LoanResponseDTO per line, or a relevant error
+     *                        status.
+     */
+    @GetMapping(path = "/export")
+    public void exportLoans(@RequestParam(required = false) LoanStatus status,
+            @RequestParam(defaultValue = "true") boolean includePayments,
+            @RequestHeader(name = "Authorization") String token, HttpServletResponse response) throws IOException {
+        try {
+            Jws<Claims> claims = this.appUtils.validateJWTAndReturnClaims(token);
+            if (claims == null
+                    || !StringUtils.pathEquals(String.valueOf(claims.getBody().get("role")), UserRole.ADMIN.toString())) {
+                response.setStatus(HttpStatus.UNAUTHORIZED.value());
+                response.getOutputStream().write("Unauthorized".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            // flushing is left to the generator's buffer rather than done per loan
+            ObjectWriter writer = this.objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                this.loanService.exportLoans(status, includePayments, loan -> {
+                    try {
+                        writer.writeValue(generator, loan);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            if (response.isCommitted()) {
+                // part of the export was sent; failing the connection is all that is left
+                throw e;
+            }
+            response.reset();
+            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+    }
+
+    /**
+     * Answer a batch request whose journal writes did not complete within the
+     * async request timeout with 202. The batch has already been applied, so it
+     * must not be retried blindly; repeating a repayment batch with the same
+     * Idempotency-Key returns its results once they are on disk.
+     */
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    public ResponseEntity<?> asyncRequestTimeout() {
+        return new ResponseEntity<String>(ACCEPTED_BEFORE_JOURNAL, HttpStatus.ACCEPTED);
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> whenComplete(CompletableFuture<?> result) {
+        return result.<ResponseEntity<?>>thenApply(body -> new ResponseEntity<>(body, HttpStatus.OK))
+                .exceptionally(e -> ResponseEntity.internalServerError().build());
+    }
+
+    private static ResponseEntity<List<LoanResponseDTO>> pageResponse(LoanPageDTO loanPageDTO) {
+        HttpHeaders headers = new HttpHeaders();
+        if (loanPageDTO.getNextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, String.valueOf(loanPageDTO.getNextCursor()));
+        }
+        return new ResponseEntity<List<LoanResponseDTO>>(loanPageDTO.getLoans(), headers, HttpStatus.OK);
+    }
 }
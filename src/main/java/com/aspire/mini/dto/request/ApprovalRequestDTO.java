@@ -0,0 +1,27 @@
+package com.aspire.mini.dto.request;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.aspire.mini.utility.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Selects pending loans to approve, either by ID or by filter. Filters also
+ * apply to explicitly listed IDs; unset filters match every loan.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApprovalRequestDTO {
+    private List<Integer> loanIds;
+    // in minor units (cents), sent as a decimal amount
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private Long maxLoanAmount;
+    private LocalDate startDateFrom;
+    private LocalDate startDateTo;
+}
@@ -0,0 +1,35 @@
+package com.aspire.mini.dto.request;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import com.aspire.mini.enums.LoanStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Query parameters for listing loans. Unset filters match every loan. Without
+ * a limit or cursor every matching loan is listed; with either the listing is
+ * paged, and without a limit a page holds up to
+ * {@link com.aspire.mini.validator.LoanValidator#DEFAULT_PAGE_SIZE} loans.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanQueryDTO {
+    // ID of the last loan of the previous page
+    private Integer cursor;
+    private Integer limit;
+    private LoanStatus status;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDateFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDateTo;
+    private boolean includePayments = true;
+}
@@ -2,6 +2,9 @@ package com.aspire.mini.dto.request;
 
 import java.time.LocalDate;
 
+import com.aspire.mini.utility.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,7 +13,9 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class LoanRequestDTO {
-    private Double loanAmount;
+    // in minor units (cents), sent as a decimal amount
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private Long loanAmount;
     private LocalDate loanStartDate;
     private Integer loanTerm;
 }
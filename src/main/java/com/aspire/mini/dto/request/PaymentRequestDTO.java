@@ -2,6 +2,9 @@ package com.aspire.mini.dto.request;
 
 import java.time.LocalDate;
 
+import com.aspire.mini.utility.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,5 +14,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class PaymentRequestDTO {
     private LocalDate paymentDate;
-    private Double amount;
+    // in minor units (cents), sent as a decimal amount
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private Long amount;
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.aspire.mini.dto.request;
+
+import java.time.LocalDate;
+
+import com.aspire.mini.utility.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RepaymentRequestDTO {
+    private Integer loanId;
+    private String email;
+    private LocalDate paymentDate;
+    // in minor units (cents), sent as a decimal amount
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private Long amount;
+}
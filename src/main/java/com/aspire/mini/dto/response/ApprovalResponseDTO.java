@@ -0,0 +1,17 @@
+package com.aspire.mini.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApprovalResponseDTO {
+
+    private List<Integer> approvedLoanIds;
+    // listed IDs that do not exist, are no longer pending or do not match the filters
+    private List<Integer> failedLoanIds;
+}
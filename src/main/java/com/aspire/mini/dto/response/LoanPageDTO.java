@@ -0,0 +1,17 @@
+package com.aspire.mini.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanPageDTO {
+
+    private List<LoanResponseDTO> loans;
+    // cursor for the next page, or null if this is the last one
+    private Integer nextCursor;
+}
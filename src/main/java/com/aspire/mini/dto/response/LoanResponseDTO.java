@@ -5,6 +5,9 @@ import java.util.List;
 
 import com.aspire.mini.enums.LoanStatus;
 import com.aspire.mini.model.Payment;
+import com.aspire.mini.utility.MoneySerializer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -17,10 +20,25 @@ public class LoanResponseDTO {
 
     private Integer loanId;
     private String userEmail;
-    private Double loanAmount;
-    private Double remainingBalance;
+    @JsonSerialize(using = MoneySerializer.class)
+    private long loanAmount;
+    @JsonSerialize(using = MoneySerializer.class)
+    private long remainingBalance;
     private LocalDate loanStartDate;
     private LoanStatus loanStatus;
     private Integer loanTerm;
+    @JsonSerialize(using = MoneySerializer.class)
+    private long paidAmount;
+    private int paidInstallments;
+    // the next installment due, left out once every installment is paid
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDate nextDueDate;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonSerialize(using = MoneySerializer.class)
+    private Long nextInstallmentAmount;
+    // pending installments the overdue sweep found missed
+    private int overdueInstallments;
+    // left out of loan listings that do not ask for payments
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Payment> payments;
 }
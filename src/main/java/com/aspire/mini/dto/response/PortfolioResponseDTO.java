@@ -0,0 +1,23 @@
+package com.aspire.mini.dto.response;
+
+import java.util.Map;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.utility.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioResponseDTO {
+
+    private Map<LoanStatus, Long> loanCounts;
+    // remaining balance of approved loans, which is also what their pending installments add up to
+    @JsonSerialize(using = MoneySerializer.class)
+    private long outstandingBalance;
+    private long pendingInstallments;
+}
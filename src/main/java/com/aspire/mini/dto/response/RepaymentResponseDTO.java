@@ -0,0 +1,25 @@
+package com.aspire.mini.dto.response;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.enums.RepaymentResult;
+import com.aspire.mini.utility.MoneySerializer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RepaymentResponseDTO {
+
+    private Integer loanId;
+    private RepaymentResult result;
+    // the loan's state right after this repayment, only set when it was applied
+    @JsonSerialize(using = MoneySerializer.class)
+    private Long remainingBalance;
+    private LoanStatus loanStatus;
+}
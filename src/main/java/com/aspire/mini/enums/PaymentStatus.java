@@ -1,5 +1,5 @@
 package com.aspire.mini.enums;
 
 public enum PaymentStatus {
-	PENDING, PAID
+	PENDING, PAID, OVERDUE
 }
@@ -0,0 +1,5 @@
+package com.aspire.mini.enums;
+
+public enum RepaymentResult {
+	APPLIED, REJECTED, NOT_FOUND, INVALID
+}
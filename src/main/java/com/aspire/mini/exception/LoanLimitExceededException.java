@@ -0,0 +1,14 @@
+package com.aspire.mini.exception;
+
+/**
+ * Thrown when a requested loan would take its user over the configured loan
+ * limits.
+ */
+public class LoanLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LoanLimitExceededException(String message) {
+        super(message);
+    }
+}
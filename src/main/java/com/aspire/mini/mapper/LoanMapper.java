@@ -0,0 +1,56 @@
+package com.aspire.mini.mapper;
+
+import java.util.List;
+
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.Payment;
+import com.aspire.mini.model.PaymentSchedule;
+
+public class LoanMapper {
+
+    private LoanMapper() {
+    }
+
+    /**
+     * Maps a Loan to a LoanResponseDTO. The payment schedule is expanded into new
+     * payments, so the response does not change when the loan is repaid later
+     * and the payments need no further copy.
+     *
+     * @param loan The loan to be mapped.
+     * @return A LoanResponseDTO representing the loan.
+     */
+    public static LoanResponseDTO toDto(Loan loan) {
+        return toDto(loan, loan.getPayments());
+    }
+
+    /**
+     * Maps a Loan to a LoanResponseDTO without its payments, which skips
+     * expanding the payment schedule.
+     *
+     * @param loan The loan to be mapped.
+     * @return A LoanResponseDTO representing the loan, with no payments.
+     */
+    public static LoanResponseDTO toSummaryDto(Loan loan) {
+        return toDto(loan, null);
+    }
+
+    private static LoanResponseDTO toDto(Loan loan, List<Payment> payments) {
+        PaymentSchedule schedule = loan.getPaymentSchedule();
+        boolean pending = schedule != null && schedule.hasPendingInstallment();
+        return new LoanResponseDTO(
+                loan.getLoanId(),
+                loan.getUserEmail(),
+                loan.getLoanAmount(),
+                loan.getRemainingBalance(),
+                loan.getLoanStartDate(),
+                loan.getLoanStatus(),
+                loan.getLoanTerm(),
+                loan.getPaidAmount(),
+                schedule == null ? 0 : schedule.getPaidCount(),
+                pending ? schedule.nextDueDate() : null,
+                pending ? schedule.nextInstallmentAmount() : null,
+                schedule == null ? 0 : schedule.getOverdueCount(),
+                payments);
+    }
+}
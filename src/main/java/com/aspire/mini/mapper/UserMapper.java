@@ -0,0 +1,21 @@
+package com.aspire.mini.mapper;
+
+import com.aspire.mini.dto.response.UserResponseDTO;
+import com.aspire.mini.model.User;
+
+public class UserMapper {
+
+	private UserMapper() {
+	}
+
+	/**
+	 * Map a User object to a UserResponseDTO.
+	 *
+	 * @param user The User object to be mapped.
+	 * @return A UserResponseDTO representing the mapped user.
+	 */
+	public static UserResponseDTO toDto(User user) {
+		return new UserResponseDTO(user.getEmail(), user.isAdmin());
+	}
+
+}
@@ -16,9 +16,9 @@ public class Loan {
     private Integer loanId;
     @NonNull
     private String userEmail;
-    @NonNull
-    private Double loanAmount;
-    private Double remainingBalance;
+    // amounts are in minor units (cents)
+    private long loanAmount;
+    private long remainingBalance;
     @NonNull
     private LocalDate loanStartDate;
     @NonNull
@@ -27,5 +27,25 @@ public class Loan {
     private Integer paymentFrequency;
     @NonNull
     private Integer loanTerm;
-    private List<Payment> payments;
+    private PaymentSchedule paymentSchedule;
+
+    /**
+     * The total paid so far, in minor units. The remaining balance is updated
+     * with every repayment, so this never looks at the payments.
+     *
+     * @return The amount paid, more than the loan amount if the closing payment
+     *         overpaid it.
+     */
+    public long getPaidAmount() {
+        return loanAmount - remainingBalance;
+    }
+
+    /**
+     * Expands the payment schedule into one Payment per installment.
+     *
+     * @return A new list of payments, or null if the loan has no schedule yet.
+     */
+    public List<Payment> getPayments() {
+        return paymentSchedule == null ? null : paymentSchedule.toPayments();
+    }
 }
@@ -3,6 +3,8 @@ package com.aspire.mini.model;
 import java.time.LocalDate;
 
 import com.aspire.mini.enums.PaymentStatus;
+import com.aspire.mini.utility.MoneySerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,6 +18,6 @@ public class Payment {
     private LocalDate paymentDate;
     @NonNull
     private PaymentStatus paymentStatus;
-    @NonNull
-    private Double amount;
+    @JsonSerialize(using = MoneySerializer.class)
+    private long amount;
 }
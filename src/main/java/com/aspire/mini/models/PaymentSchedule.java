@@ -0,0 +1,272 @@
+package com.aspire.mini.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aspire.mini.enums.PaymentStatus;
+
+/**
+ * Compact representation of a loan's weekly installments. Instead of one
+ * Payment per installment, the schedule keeps:
+ * <ul>
+ * <li>segments, each an evenly split run of installments starting at an anchor
+ * date. A loan starts with one segment; every repayment that does not match
+ * the installment amount starts a new one for the remaining installments,</li>
+ * <li>deviations, the paid installments whose amount differs from the
+ * scheduled one,</li>
+ * <li>the number of installments already paid. Installments are always paid
+ * in order, so every installment before that count is paid and the count is
+ * also the position of the next one due,</li>
+ * <li>the number of installments the overdue sweep has found missed. Missed
+ * installments are also found in order, so every pending installment before
+ * that count is overdue.</li>
+ * </ul>
+ * Pending installments always belong to the last segment and never deviate,
+ * so the next installment's amount and due date take constant time however
+ * long the loan has been repaid.
+ * Payments are only materialized by {@link #toPayments()} when a response
+ * needs them.
+ * <p>
+ * A schedule is not thread safe; callers serialize access per loan.
+ */
+public class PaymentSchedule {
+
+    /**
+     * Installments from {@code firstInstallment} up to the next segment, each of
+     * {@code installmentAmount}, with {@code remainder} added to the first one.
+     * The n-th installment of the segment is due {@code n} payment periods after
+     * {@code anchorDate}.
+     */
+    public record Segment(int firstInstallment, LocalDate anchorDate, long installmentAmount, long remainder) {
+    }
+
+    /**
+     * A paid installment whose amount differs from the scheduled one.
+     */
+    public record Deviation(int installment, long amount) {
+    }
+
+    private final int paymentFrequency;
+
+    private final List<Segment> segments;
+
+    private final List<Deviation> deviations;
+
+    private int installmentCount;
+
+    private int paidCount;
+
+    private int missedCount;
+
+    public PaymentSchedule(int paymentFrequency, int installmentCount, int paidCount,
+            List<Segment> segments, List<Deviation> deviations) {
+        this.paymentFrequency = paymentFrequency;
+        this.installmentCount = installmentCount;
+        this.paidCount = paidCount;
+        this.segments = new ArrayList<>(segments);
+        this.deviations = new ArrayList<>(deviations);
+    }
+
+    /**
+     * Creates a schedule that splits an amount evenly over a number of
+     * installments. The cents that do not divide evenly are added to the first
+     * installment, so the installments always sum to the amount exactly.
+     *
+     * @param loanAmount       The total amount in minor units.
+     * @param loanTerm         The number of installments.
+     * @param loanStartDate    The start date; the first installment is due one
+     *                         payment period later.
+     * @param paymentFrequency The frequency of payments in days.
+     * @return The payment schedule.
+     */
+    public static PaymentSchedule create(long loanAmount, int loanTerm, LocalDate loanStartDate,
+            int paymentFrequency) {
+        PaymentSchedule schedule = new PaymentSchedule(paymentFrequency, Math.max(loanTerm, 0), 0,
+                Collections.emptyList(), Collections.emptyList());
+        schedule.addSegment(0, loanStartDate, loanAmount);
+        return schedule;
+    }
+
+    /**
+     * @return true if at least one installment is still pending.
+     */
+    public boolean hasPendingInstallment() {
+        return this.paidCount < this.installmentCount;
+    }
+
+    /**
+     * @return The amount of the next pending installment, in minor units. Only
+     *         meaningful while {@link #hasPendingInstallment()}.
+     */
+    public long nextInstallmentAmount() {
+        Segment segment = lastSegment();
+        return segment.installmentAmount() + (this.paidCount == segment.firstInstallment() ? segment.remainder() : 0);
+    }
+
+    /**
+     * @return The due date of the next pending installment, or null if every
+     *         installment is paid.
+     */
+    public LocalDate nextDueDate() {
+        return hasPendingInstallment() ? pendingDueDate(this.paidCount) : null;
+    }
+
+    /**
+     * @return The due date of the first pending installment not yet found
+     *         missed, or null if there is none.
+     */
+    public LocalDate nextUnmissedDueDate() {
+        int next = Math.max(this.paidCount, this.missedCount);
+        return next < this.installmentCount ? pendingDueDate(next) : null;
+    }
+
+    /**
+     * @return The number of pending installments found missed.
+     */
+    public int getOverdueCount() {
+        return Math.max(this.missedCount - this.paidCount, 0);
+    }
+
+    /**
+     * Marks every pending installment due before the given day as missed, so
+     * that it is reported as overdue until it is paid.
+     *
+     * @param asOf The day the installments are overdue on.
+     * @return The due dates of the installments newly found missed, in order.
+     */
+    public List<LocalDate> markMissedInstallments(LocalDate asOf) {
+        List<LocalDate> missed = new ArrayList<>();
+        for (int i = Math.max(this.paidCount, this.missedCount); i < this.installmentCount; i++) {
+            LocalDate dueDate = pendingDueDate(i);
+            if (!dueDate.isBefore(asOf)) {
+                break;
+            }
+            missed.add(dueDate);
+            this.missedCount = i + 1;
+        }
+        return missed;
+    }
+
+    /**
+     * Marks the next pending installment as paid with its scheduled amount.
+     */
+    public void payNextInstallment() {
+        this.paidCount++;
+    }
+
+    /**
+     * Marks the next pending installment as paid with a different amount and
+     * spreads the remaining balance evenly over the installments still pending,
+     * due one payment period apart starting from the payment date. If the last
+     * installment was underpaid, the shortfall becomes a new installment due one
+     * payment period after the payment date.
+     *
+     * @param amount           The amount paid, in minor units.
+     * @param remainingBalance The balance left after the payment, in minor units.
+     * @param paymentDate      The date of the payment.
+     */
+    public void payNextInstallmentAndReamortize(long amount, long remainingBalance, LocalDate paymentDate) {
+        this.deviations.add(new Deviation(this.paidCount, amount));
+        this.paidCount++;
+        // the pending installments get new due dates, so they have to be missed again
+        this.missedCount = Math.min(this.missedCount, this.paidCount);
+        if (!hasPendingInstallment() && remainingBalance > 0) {
+            this.installmentCount++;
+        }
+        if (hasPendingInstallment()) {
+            addSegment(this.paidCount, paymentDate, remainingBalance);
+        }
+    }
+
+    /**
+     * Pays off the schedule: the next pending installment, if any, is paid with
+     * the given amount and every installment after it is dropped.
+     *
+     * @param amount The amount of the closing payment, in minor units.
+     */
+    public void close(long amount) {
+        if (hasPendingInstallment()) {
+            if (nextInstallmentAmount() != amount) {
+                this.deviations.add(new Deviation(this.paidCount, amount));
+            }
+            this.paidCount++;
+        }
+        this.installmentCount = this.paidCount;
+        this.missedCount = Math.min(this.missedCount, this.paidCount);
+    }
+
+    /**
+     * Expands the schedule into one Payment per installment.
+     *
+     * @return A new list of payments in due date order.
+     */
+    public List<Payment> toPayments() {
+        List<Payment> payments = new ArrayList<>(this.installmentCount);
+        int segmentIndex = 0;
+        int deviationIndex = 0;
+        for (int i = 0; i < this.installmentCount; i++) {
+            while (segmentIndex + 1 < this.segments.size()
+                    && this.segments.get(segmentIndex + 1).firstInstallment() <= i) {
+                segmentIndex++;
+            }
+            Segment segment = this.segments.get(segmentIndex);
+            long amount = segment.installmentAmount() + (i == segment.firstInstallment() ? segment.remainder() : 0);
+            if (deviationIndex < this.deviations.size() && this.deviations.get(deviationIndex).installment() == i) {
+                amount = this.deviations.get(deviationIndex++).amount();
+            }
+            payments.add(new Payment(
+                    segment.anchorDate().plusDays((long) (i - segment.firstInstallment() + 1) * this.paymentFrequency),
+                    i < this.paidCount ? PaymentStatus.PAID
+                            : i < this.missedCount ? PaymentStatus.OVERDUE : PaymentStatus.PENDING,
+                    amount));
+        }
+        return payments;
+    }
+
+    public int getPaymentFrequency() {
+        return paymentFrequency;
+    }
+
+    public int getInstallmentCount() {
+        return installmentCount;
+    }
+
+    public int getPaidCount() {
+        return paidCount;
+    }
+
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    public List<Deviation> getDeviations() {
+        return Collections.unmodifiableList(deviations);
+    }
+
+    private void addSegment(int firstInstallment, LocalDate anchorDate, long amount) {
+        int installments = this.installmentCount - firstInstallment;
+        if (installments <= 0) {
+            return;
+        }
+        this.segments.add(new Segment(firstInstallment, anchorDate, amount / installments, amount % installments));
+    }
+
+    /**
+     * Pending installments always belong to the last segment.
+     */
+    private LocalDate pendingDueDate(int installment) {
+        Segment segment = lastSegment();
+        return segment.anchorDate()
+                .plusDays((long) (installment - segment.firstInstallment() + 1) * this.paymentFrequency);
+    }
+
+    private Segment lastSegment() {
+        if (this.segments.isEmpty()) {
+            throw new IllegalStateException("Payment schedule has no installments");
+        }
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+}
@@ -8,7 +8,7 @@ import lombok.Data;
 public class User {
 
 	private final String email;
-	private String password;
+	private String passwordHash;
 	private boolean isAdmin;
 
 }
@@ -0,0 +1,63 @@
+package com.aspire.mini.persistence;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface Journal extends Closeable {
+
+    /**
+     * Queues an event for writing. Events are written in the order they are
+     * appended, so callers append while holding whatever lock orders the change
+     * itself.
+     *
+     * @param event The event to record.
+     * @return The sequence number of the event, to be passed to
+     *         {@link #awaitDurable(long)}.
+     */
+    long append(JournalEvent event);
+
+    /**
+     * Blocks until the event with the given sequence number, and every event
+     * before it, has been written to disk.
+     *
+     * @param sequence The sequence number returned by {@link #append}.
+     * @throws java.io.UncheckedIOException If the journal could not be written.
+     */
+    void awaitDurable(long sequence);
+
+    /**
+     * Like {@link #awaitDurable(long)}, but returns at once. The future may be
+     * completed on the journal's writer thread, so stages depending on it
+     * should be cheap or run asynchronously.
+     *
+     * @param sequence The sequence number returned by {@link #append}.
+     * @return A future completed once the event is on disk, or completed
+     *         exceptionally with an {@link java.io.UncheckedIOException} if the
+     *         journal could not be written.
+     */
+    CompletableFuture<Void> whenDurable(long sequence);
+
+    /**
+     * Reads every event recorded so far, in order.
+     *
+     * @param consumer Receives each event.
+     */
+    void replay(Consumer<JournalEvent> consumer);
+
+    /**
+     * Starts a new journal segment. Events appended before the call end up in
+     * an archived segment, which is still replayed until it is discarded.
+     * Blocks until the new segment is in use.
+     */
+    void rotate();
+
+    /**
+     * Deletes every archived segment, once a snapshot taken after the last
+     * {@link #rotate()} covers their events.
+     */
+    void discardArchived();
+
+    @Override
+    void close();
+}
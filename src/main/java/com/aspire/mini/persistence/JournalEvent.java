@@ -0,0 +1,29 @@
+package com.aspire.mini.persistence;
+
+import java.time.LocalDate;
+
+/**
+ * A state change recorded in the journal. Replaying the events in order
+ * rebuilds the loan book and the user directory. Closing a loan is not an
+ * event of its own; it follows from replaying the repayment that closed it.
+ * <p>
+ * Events may be replayed over a snapshot that already contains some of them,
+ * so applying an event twice must not change the state. Creations and
+ * approvals are naturally idempotent; a repayment records the installment it
+ * paid and is skipped if that installment is already paid.
+ */
+public sealed interface JournalEvent {
+
+    record UserCreated(String email, String passwordHash, boolean isAdmin) implements JournalEvent {
+    }
+
+    record LoanCreated(int loanId, String userEmail, long loanAmount, LocalDate loanStartDate, int loanTerm,
+            int paymentFrequency) implements JournalEvent {
+    }
+
+    record LoanApproved(int loanId) implements JournalEvent {
+    }
+
+    record LoanRepaid(int loanId, int installment, long amount, LocalDate paymentDate) implements JournalEvent {
+    }
+}
@@ -0,0 +1,10 @@
+package com.aspire.mini.persistence;
+
+/**
+ * Applies replayed journal events to in-memory state. Handlers ignore the
+ * event types they do not own and must not journal the events again.
+ */
+public interface JournalEventHandler {
+
+    void apply(JournalEvent event);
+}
@@ -0,0 +1,44 @@
+package com.aspire.mini.persistence;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Restores the last snapshot and replays the journal over it into the
+ * in-memory loan book and user directory at startup, before the application
+ * starts serving requests.
+ */
+@Component
+@Slf4j
+public class JournalRecovery {
+
+    private final Snapshotter snapshotter;
+
+    private final Journal journal;
+
+    private final List<JournalEventHandler> handlers;
+
+    public JournalRecovery(Snapshotter snapshotter, Journal journal, List<JournalEventHandler> handlers) {
+        this.snapshotter = snapshotter;
+        this.journal = journal;
+        this.handlers = handlers;
+    }
+
+    @PostConstruct
+    public void recover() {
+        this.snapshotter.restore();
+        long start = System.currentTimeMillis();
+        long[] replayed = { 0 };
+        this.journal.replay(event -> {
+            for (JournalEventHandler handler : this.handlers) {
+                handler.apply(event);
+            }
+            replayed[0]++;
+        });
+        log.info("Replayed " + replayed[0] + " journal events in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,269 @@
+package com.aspire.mini.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.enums.PaymentStatus;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.Payment;
+import com.aspire.mini.model.PaymentSchedule;
+
+/**
+ * Compact binary encoding of loans and payments, used for snapshots, the
+ * journal and anything else that moves loans between processes.
+ * <p>
+ * Integers are LEB128 varints, so small values such as IDs, counts and terms
+ * take one or two bytes. Values that may be negative (balances, date deltas)
+ * are zigzag encoded first. Dates are epoch days; a loan's segment anchor
+ * dates and a payment list's due dates are stored as deltas from the date
+ * before them, which for weekly schedules is a single byte each. Statuses are
+ * stored as their enum ordinal.
+ * <p>
+ * Decoding reads straight from the given buffer, which may be a slice of a
+ * memory-mapped file; nothing is copied except string bytes from direct
+ * buffers.
+ */
+public final class LoanCodec {
+
+    private static final int MAX_VAR_INT_BYTES = 5;
+
+    private static final int MAX_VAR_LONG_BYTES = 10;
+
+    private static final LoanStatus[] LOAN_STATUSES = LoanStatus.values();
+
+    private static final PaymentStatus[] PAYMENT_STATUSES = PaymentStatus.values();
+
+    private LoanCodec() {
+    }
+
+    /**
+     * An upper bound of the number of bytes {@link #encode(Loan, ByteBuffer)}
+     * writes for the loan.
+     */
+    public static int maxEncodedSize(Loan loan) {
+        PaymentSchedule schedule = loan.getPaymentSchedule();
+        return 7 * MAX_VAR_INT_BYTES + 3 * MAX_VAR_LONG_BYTES + 1 + maxEncodedSize(loan.getUserEmail())
+                + MAX_VAR_INT_BYTES + schedule.getSegments().size() * (MAX_VAR_INT_BYTES + 3 * MAX_VAR_LONG_BYTES)
+                + MAX_VAR_INT_BYTES + schedule.getDeviations().size() * (MAX_VAR_INT_BYTES + MAX_VAR_LONG_BYTES);
+    }
+
+    /**
+     * Writes a loan, including its payment schedule. The caller must hold the
+     * loan's lock and make sure {@link #maxEncodedSize(Loan)} bytes remain in
+     * the buffer.
+     *
+     * @param loan The loan to encode.
+     * @param out  The buffer to write to.
+     */
+    public static void encode(Loan loan, ByteBuffer out) {
+        putVarInt(out, loan.getLoanId());
+        putString(out, loan.getUserEmail());
+        putVarLong(out, loan.getLoanAmount());
+        putVarLong(out, zigzag(loan.getRemainingBalance()));
+        putDate(out, loan.getLoanStartDate());
+        out.put((byte) loan.getLoanStatus().ordinal());
+        putVarInt(out, loan.getPaymentFrequency());
+        putVarInt(out, loan.getLoanTerm());
+
+        PaymentSchedule schedule = loan.getPaymentSchedule();
+        putVarInt(out, schedule.getInstallmentCount());
+        putVarInt(out, schedule.getPaidCount());
+        List<PaymentSchedule.Segment> segments = schedule.getSegments();
+        putVarInt(out, segments.size());
+        int previousInstallment = 0;
+        long previousDay = loan.getLoanStartDate().toEpochDay();
+        for (PaymentSchedule.Segment segment : segments) {
+            putVarInt(out, segment.firstInstallment() - previousInstallment);
+            putVarLong(out, zigzag(segment.anchorDate().toEpochDay() - previousDay));
+            putVarLong(out, segment.installmentAmount());
+            putVarLong(out, segment.remainder());
+            previousInstallment = segment.firstInstallment();
+            previousDay = segment.anchorDate().toEpochDay();
+        }
+        List<PaymentSchedule.Deviation> deviations = schedule.getDeviations();
+        putVarInt(out, deviations.size());
+        previousInstallment = 0;
+        for (PaymentSchedule.Deviation deviation : deviations) {
+            putVarInt(out, deviation.installment() - previousInstallment);
+            putVarLong(out, deviation.amount());
+            previousInstallment = deviation.installment();
+        }
+    }
+
+    /**
+     * Reads a loan written by {@link #encode(Loan, ByteBuffer)}.
+     *
+     * @param in The buffer to read from, positioned at the loan.
+     * @return The decoded loan.
+     */
+    public static Loan decode(ByteBuffer in) {
+        Loan loan = new Loan();
+        loan.setLoanId(getVarInt(in));
+        loan.setUserEmail(getString(in));
+        loan.setLoanAmount(getVarLong(in));
+        loan.setRemainingBalance(unzigzag(getVarLong(in)));
+        loan.setLoanStartDate(getDate(in));
+        loan.setLoanStatus(LOAN_STATUSES[in.get()]);
+        loan.setPaymentFrequency(getVarInt(in));
+        loan.setLoanTerm(getVarInt(in));
+
+        int installmentCount = getVarInt(in);
+        int paidCount = getVarInt(in);
+        int segmentCount = getVarInt(in);
+        List<PaymentSchedule.Segment> segments = new ArrayList<>(segmentCount);
+        int installment = 0;
+        long day = loan.getLoanStartDate().toEpochDay();
+        for (int i = 0; i < segmentCount; i++) {
+            installment += getVarInt(in);
+            day += unzigzag(getVarLong(in));
+            segments.add(new PaymentSchedule.Segment(installment, LocalDate.ofEpochDay(day), getVarLong(in),
+                    getVarLong(in)));
+        }
+        int deviationCount = getVarInt(in);
+        List<PaymentSchedule.Deviation> deviations = new ArrayList<>(deviationCount);
+        installment = 0;
+        for (int i = 0; i < deviationCount; i++) {
+            installment += getVarInt(in);
+            deviations.add(new PaymentSchedule.Deviation(installment, getVarLong(in)));
+        }
+        loan.setPaymentSchedule(new PaymentSchedule(loan.getPaymentFrequency(), installmentCount, paidCount,
+                segments, deviations));
+        return loan;
+    }
+
+    /**
+     * An upper bound of the number of bytes
+     * {@link #encodePayments(List, ByteBuffer)} writes for the payments.
+     */
+    public static int maxEncodedSize(List<Payment> payments) {
+        return MAX_VAR_INT_BYTES + payments.size() * (2 * MAX_VAR_LONG_BYTES + 1);
+    }
+
+    /**
+     * Writes a list of payments, each due date as the number of days after the
+     * previous one.
+     *
+     * @param payments The payments to encode.
+     * @param out      The buffer to write to, with at least
+     *                 {@link #maxEncodedSize(List)} bytes remaining.
+     */
+    public static void encodePayments(List<Payment> payments, ByteBuffer out) {
+        putVarInt(out, payments.size());
+        long previousDay = 0;
+        for (Payment payment : payments) {
+            long day = payment.getPaymentDate().toEpochDay();
+            putVarLong(out, zigzag(day - previousDay));
+            out.put((byte) payment.getPaymentStatus().ordinal());
+            putVarLong(out, payment.getAmount());
+            previousDay = day;
+        }
+    }
+
+    /**
+     * Reads a list of payments written by
+     * {@link #encodePayments(List, ByteBuffer)}.
+     *
+     * @param in The buffer to read from, positioned at the payments.
+     * @return The decoded payments.
+     */
+    public static List<Payment> decodePayments(ByteBuffer in) {
+        int count = getVarInt(in);
+        List<Payment> payments = new ArrayList<>(count);
+        long day = 0;
+        for (int i = 0; i < count; i++) {
+            day += unzigzag(getVarLong(in));
+            payments.add(new Payment(LocalDate.ofEpochDay(day), PAYMENT_STATUSES[in.get()], getVarLong(in)));
+        }
+        return payments;
+    }
+
+    public static int maxEncodedSize(String value) {
+        return MAX_VAR_INT_BYTES + value.length() * 3;
+    }
+
+    public static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(out, bytes.length);
+        out.put(bytes);
+    }
+
+    public static String getString(ByteBuffer in) {
+        int length = getVarInt(in);
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    public static void putDate(ByteBuffer out, LocalDate date) {
+        putVarLong(out, zigzag(date.toEpochDay()));
+    }
+
+    public static LocalDate getDate(ByteBuffer in) {
+        return LocalDate.ofEpochDay(unzigzag(getVarLong(in)));
+    }
+
+    /**
+     * Writes an int as an unsigned varint; negative values take five bytes.
+     */
+    public static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Writes a long as an unsigned varint; negative values take ten bytes.
+     */
+    public static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
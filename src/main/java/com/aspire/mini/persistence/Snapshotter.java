@@ -0,0 +1,295 @@
+package com.aspire.mini.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.User;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.UserRepository;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.StripedLock;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes the whole user directory and loan book to a binary snapshot file,
+ * periodically and on shutdown, and restores it at startup so that only the
+ * journal written since the last snapshot has to be replayed.
+ * <p>
+ * A snapshot first rotates the journal, then copies each loan while holding
+ * that loan's lock, so request threads only ever wait for the one loan being
+ * copied. Every event in the archived journal segments was applied before the
+ * rotation and is therefore in the snapshot, so the segments are deleted once
+ * the snapshot is on disk. Events in the active segment may or may not be in
+ * the snapshot; replaying them over it is idempotent.
+ * <p>
+ * The file is {@code [magic][version]} followed by records of
+ * {@code [payload length][payload]} and a zero length at the end. Loans are
+ * encoded with {@link LoanCodec}. It is
+ * written to a temporary file and atomically renamed, and read back through
+ * memory-mapped windows.
+ */
+@Component
+@Slf4j
+public class Snapshotter {
+
+    private static final int MAGIC = 0x4D534E50;
+
+    private static final int VERSION = 3;
+
+    private static final byte USER = 1;
+
+    private static final byte LOAN = 2;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final LoanRepository loanRepository;
+
+    private final UserRepository userRepository;
+
+    private final StripedLock loanLocks;
+
+    private final LoanIdAllocator loanIdAllocator;
+
+    private final Journal journal;
+
+    private final boolean enabled;
+
+    private final Path path;
+
+    public Snapshotter(LoanRepository loanRepository, UserRepository userRepository, StripedLock loanLocks,
+            LoanIdAllocator loanIdAllocator, Journal journal,
+            @Value("${snapshot.enabled:true}") boolean enabled,
+            @Value("${snapshot.path:data/mini-aspire.snapshot}") String path) {
+        this.loanRepository = loanRepository;
+        this.userRepository = userRepository;
+        this.loanLocks = loanLocks;
+        this.loanIdAllocator = loanIdAllocator;
+        this.journal = journal;
+        this.enabled = enabled;
+        this.path = Path.of(path);
+    }
+
+    @Scheduled(initialDelayString = "${snapshot.interval-ms:300000}",
+            fixedDelayString = "${snapshot.interval-ms:300000}")
+    public void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        scheduledSnapshot();
+    }
+
+    /**
+     * Writes a snapshot of every user and loan and discards the journal
+     * segments it covers.
+     */
+    public synchronized void snapshot() {
+        if (!this.enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        this.journal.rotate();
+        Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        long loans = 0;
+        try {
+            Path parent = this.path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter writer = new SnapshotWriter(channel);
+                writer.reserve(8).putInt(MAGIC).putInt(VERSION);
+                for (User user : this.userRepository.findAll()) {
+                    writer.writeUser(user);
+                }
+                for (Loan loan : this.loanRepository.findAll()) {
+                    this.loanLocks.withLock(loan.getLoanId(), () -> writer.writeLoan(loan));
+                    loans++;
+                }
+                writer.reserve(4).putInt(0);
+                writer.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + this.path, e);
+        }
+        this.journal.discardArchived();
+        log.info("Snapshot of " + loans + " loans written in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Loads the last snapshot, if any, into the repositories. Must run before
+     * the journal is replayed and before requests are served.
+     */
+    public void restore() {
+        if (!this.enabled || !Files.exists(this.path)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long loans = 0;
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            SnapshotReader reader = new SnapshotReader(channel);
+            ByteBuffer header = reader.next(8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalStateException("Unsupported snapshot file " + this.path);
+            }
+            int maxLoanId = 0;
+            Map<String, String> emails = new HashMap<>();
+            while (true) {
+                int length = reader.next(4).getInt();
+                if (length == 0) {
+                    break;
+                }
+                ByteBuffer record = reader.next(length);
+                byte type = record.get();
+                if (type == USER) {
+                    this.userRepository.saveIfAbsent(readUser(record));
+                } else if (type == LOAN) {
+                    Loan loan = LoanCodec.decode(record);
+                    // a user's loans share one email string instead of a copy each
+                    loan.setUserEmail(emails.computeIfAbsent(loan.getUserEmail(), email -> email));
+                    this.loanRepository.save(loan);
+                    maxLoanId = Math.max(maxLoanId, loan.getLoanId());
+                    loans++;
+                } else {
+                    throw new IllegalStateException("Unknown snapshot record type " + type);
+                }
+            }
+            this.loanIdAllocator.advanceTo(maxLoanId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore snapshot " + this.path, e);
+        }
+        log.info("Restored " + loans + " loans from snapshot in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static User readUser(ByteBuffer record) {
+        return new User(LoanCodec.getString(record), LoanCodec.getString(record), record.get() == 1);
+    }
+
+    /**
+     * Buffers records and writes them to the snapshot file in large chunks.
+     */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                flush();
+                if (this.buffer.capacity() < bytes) {
+                    this.buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return this.buffer;
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        void writeUser(User user) throws IOException {
+            ByteBuffer out = reserve(4 + 1 + LoanCodec.maxEncodedSize(user.getEmail())
+                    + LoanCodec.maxEncodedSize(user.getPasswordHash()) + 1);
+            int start = out.position();
+            out.position(start + 4).put(USER);
+            LoanCodec.putString(out, user.getEmail());
+            LoanCodec.putString(out, user.getPasswordHash());
+            out.put((byte) (user.isAdmin() ? 1 : 0));
+            out.putInt(start, out.position() - start - 4);
+        }
+
+        /**
+         * The caller must hold the loan's lock.
+         */
+        boolean writeLoan(Loan loan) {
+            try {
+                ByteBuffer out = reserve(4 + 1 + LoanCodec.maxEncodedSize(loan));
+                int start = out.position();
+                out.position(start + 4).put(LOAN);
+                LoanCodec.encode(loan, out);
+                out.putInt(start, out.position() - start - 4);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads the snapshot file through memory-mapped windows of up to
+     * {@link #WINDOW_BYTES}, moving the window whenever a record crosses its
+     * end.
+     */
+    private static final class SnapshotReader {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private long windowStart;
+
+        private MappedByteBuffer window;
+
+        SnapshotReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        /**
+         * @return A buffer holding the next {@code bytes} bytes of the file.
+         */
+        ByteBuffer next(int bytes) throws IOException {
+            if (this.window.remaining() < bytes) {
+                map(this.windowStart + this.window.position());
+                if (this.window.remaining() < bytes) {
+                    throw new IOException("Snapshot file is truncated");
+                }
+            }
+            ByteBuffer slice = this.window.slice(this.window.position(), bytes);
+            this.window.position(this.window.position() + bytes);
+            return slice;
+        }
+
+        private void map(long position) throws IOException {
+            this.windowStart = position;
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(this.size - position, WINDOW_BYTES));
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.aspire.mini.persistence.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.aspire.mini.persistence.Journal;
+import com.aspire.mini.persistence.JournalEvent;
+import com.aspire.mini.persistence.LoanCodec;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal file written through a {@link FileChannel}.
+ * <p>
+ * Appending only queues the encoded record. A single writer thread drains
+ * everything queued since its last write, writes it with one gathering write
+ * and forces it to disk once, then wakes every caller waiting on a record in
+ * that batch and completes the futures returned for it by
+ * {@link #whenDurable(long)}. Concurrent requests therefore share the cost of
+ * a flush (group commit).
+ * <p>
+ * Each record is {@code [payload length][CRC32 of payload][payload]}, with
+ * the payload's fields encoded as {@link LoanCodec} varints. On
+ * replay, a truncated or corrupt record at the tail, left behind by a crash
+ * in the middle of a write, ends the replay and is cut off the file.
+ * <p>
+ * {@link #rotate()} renames the active file to {@code <path>.<n>} and starts
+ * a new one at {@code path}. Archived segments are replayed in order before
+ * the active one until {@link #discardArchived()} deletes them.
+ */
+@Slf4j
+public class FileChannelJournal implements Journal {
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte USER_CREATED = 1;
+    private static final byte LOAN_CREATED = 2;
+    private static final byte LOAN_APPROVED = 3;
+    private static final byte LOAN_REPAID = 4;
+
+    // queued in place of a record to switch to a new segment at that point
+    private static final ByteBuffer ROTATE = ByteBuffer.allocate(0);
+
+    private final Path path;
+
+    private final boolean fsync;
+
+    // only used by the writer thread once replay is done
+    private FileChannel channel;
+
+    private int nextArchive;
+
+    private final Thread writer;
+
+    // a ReentrantLock rather than a monitor, so that a virtual thread waiting on
+    // the journal unmounts from its carrier thread instead of pinning it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // signalled to the writer when records are queued or the journal is closed
+    private final Condition appended = this.lock.newCondition();
+
+    // signalled to waiting callers when a batch is on disk or the writer failed
+    private final Condition durable = this.lock.newCondition();
+
+    private List<ByteBuffer> pending = new ArrayList<>();
+
+    private long appendedSequence;
+
+    private long durableSequence;
+
+    // futures returned by whenDurable, by the sequence number they wait for
+    private final NavigableMap<Long, CompletableFuture<Void>> durableFutures = new TreeMap<>();
+
+    private IOException failure;
+
+    private boolean closed;
+
+    private boolean replayed;
+
+    public FileChannelJournal(Path path, boolean fsync) {
+        this.path = path;
+        this.fsync = fsync;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.channel = openActive();
+            List<Path> archives = archives();
+            this.nextArchive = archives.isEmpty() ? 1 : archiveNumber(archives.get(archives.size() - 1)) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal " + path, e);
+        }
+        this.writer = new Thread(this::writeLoop, "loan-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public long append(JournalEvent event) {
+        ByteBuffer record = encode(event);
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            this.pending.add(record);
+            this.appended.signal();
+            return ++this.appendedSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void rotate() {
+        long sequence;
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            this.pending.add(ROTATE);
+            this.appended.signal();
+            sequence = ++this.appendedSequence;
+        } finally {
+            this.lock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Deletes the archived segments. Must not run concurrently with
+     * {@link #rotate()}.
+     */
+    @Override
+    public void discardArchived() {
+        try {
+            for (Path archive : archives()) {
+                Files.delete(archive);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete archived journal segments of " + this.path, e);
+        }
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        this.lock.lock();
+        try {
+            while (this.durableSequence < sequence && this.failure == null) {
+                try {
+                    this.durable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", e);
+                }
+            }
+            if (this.durableSequence < sequence) {
+                throw new UncheckedIOException("Journal write failed", this.failure);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> whenDurable(long sequence) {
+        this.lock.lock();
+        try {
+            if (this.durableSequence >= sequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (this.failure != null) {
+                return CompletableFuture.failedFuture(new UncheckedIOException("Journal write failed", this.failure));
+            }
+            return this.durableFutures.computeIfAbsent(sequence, key -> new CompletableFuture<>());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Replays the archived segments and then the active one. Must be called
+     * before the first append, since a corrupt tail of the active segment is
+     * truncated so that new records follow the last good one.
+     */
+    @Override
+    public void replay(Consumer<JournalEvent> consumer) {
+        this.lock.lock();
+        try {
+            if (this.replayed || this.appendedSequence > 0) {
+                throw new IllegalStateException("Journal can only be replayed once, before appending");
+            }
+            this.replayed = true;
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            for (Path archive : archives()) {
+                try (FileChannel archived = FileChannel.open(archive, StandardOpenOption.READ)) {
+                    if (replay(archived, consumer) < archived.size()) {
+                        log.warn("Skipped incomplete records at the end of " + archive);
+                    }
+                }
+            }
+            long validLength = replay(this.channel, consumer);
+            if (validLength < this.channel.size()) {
+                log.warn("Truncating " + (this.channel.size() - validLength) + " bytes of incomplete journal records");
+                this.channel.truncate(validLength);
+            }
+            this.channel.position(validLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay journal " + this.path, e);
+        }
+    }
+
+    /**
+     * Replays the records of one segment up to the first incomplete one.
+     *
+     * @return The length of the segment's valid records.
+     */
+    private static long replay(FileChannel segment, Consumer<JournalEvent> consumer) throws IOException {
+        long validLength = 0;
+        // not closed: closing the stream would close the channel
+        InputStream input = new BufferedInputStream(Channels.newInputStream(segment.position(0)), 1 << 16);
+        DataInputStream data = new DataInputStream(input);
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = data.readInt();
+                int checksum = data.readInt();
+                if (length <= 0 || length > segment.size()) {
+                    break;
+                }
+                payload = new byte[length];
+                data.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            consumer.accept(decode(ByteBuffer.wrap(payload)));
+            validLength += HEADER_BYTES + payload.length;
+        }
+        return validLength;
+    }
+
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.appended.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.writer.join();
+            this.channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchSequence;
+            this.lock.lock();
+            try {
+                while (this.pending.isEmpty() && !this.closed) {
+                    try {
+                        this.appended.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                batch = this.pending;
+                batchSequence = this.appendedSequence;
+                this.pending = new ArrayList<>();
+            } finally {
+                this.lock.unlock();
+            }
+            try {
+                int from = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i) == ROTATE) {
+                        write(batch.subList(from, i));
+                        switchSegment();
+                        from = i + 1;
+                    }
+                }
+                write(batch.subList(from, batch.size()));
+                List<CompletableFuture<Void>> completed;
+                this.lock.lock();
+                try {
+                    this.durableSequence = batchSequence;
+                    this.durable.signalAll();
+                    completed = takeDurableFutures(batchSequence);
+                } finally {
+                    this.lock.unlock();
+                }
+                // completed outside the lock, since dependent stages may run here
+                completed.forEach(future -> future.complete(null));
+            } catch (IOException e) {
+                log.error("Journal write failed: " + e.getMessage());
+                List<CompletableFuture<Void>> failed;
+                this.lock.lock();
+                try {
+                    this.failure = e;
+                    this.durable.signalAll();
+                    failed = takeDurableFutures(Long.MAX_VALUE);
+                } finally {
+                    this.lock.unlock();
+                }
+                UncheckedIOException failure = new UncheckedIOException("Journal write failed", e);
+                failed.forEach(future -> future.completeExceptionally(failure));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the futures waiting for sequence numbers up to the given one. The
+     * caller must hold the lock.
+     */
+    private List<CompletableFuture<Void>> takeDurableFutures(long sequence) {
+        Map<Long, CompletableFuture<Void>> due = this.durableFutures.headMap(sequence, true);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(due.values());
+        due.clear();
+        return futures;
+    }
+
+    private void write(List<ByteBuffer> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= this.channel.write(buffers);
+        }
+        if (this.fsync) {
+            this.channel.force(false);
+        }
+    }
+
+    private void switchSegment() throws IOException {
+        this.channel.close();
+        Files.move(this.path, archivePath(this.nextArchive++), StandardCopyOption.ATOMIC_MOVE);
+        this.channel = openActive();
+    }
+
+    private FileChannel openActive() throws IOException {
+        FileChannel active = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return active.position(active.size());
+    }
+
+    private Path archivePath(int number) {
+        return this.path.resolveSibling(this.path.getFileName() + "." + number);
+    }
+
+    private int archiveNumber(Path archive) {
+        String name = archive.getFileName().toString();
+        return Integer.parseInt(name.substring(this.path.getFileName().toString().length() + 1));
+    }
+
+    /**
+     * @return The archived segments, oldest first.
+     */
+    private List<Path> archives() throws IOException {
+        Pattern name = Pattern.compile(Pattern.quote(this.path.getFileName().toString()) + "\\.\\d+");
+        try (Stream<Path> siblings = Files.list(this.path.toAbsolutePath().getParent())) {
+            return siblings.filter(sibling -> name.matcher(sibling.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingInt(this::archiveNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static ByteBuffer encode(JournalEvent event) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + maxEncodedSize(event));
+        ByteBuffer payload = record.position(HEADER_BYTES).slice();
+        if (event instanceof JournalEvent.UserCreated userCreated) {
+            payload.put(USER_CREATED);
+            LoanCodec.putString(payload, userCreated.email());
+            LoanCodec.putString(payload, userCreated.passwordHash());
+            payload.put((byte) (userCreated.isAdmin() ? 1 : 0));
+        } else if (event instanceof JournalEvent.LoanCreated loanCreated) {
+            payload.put(LOAN_CREATED);
+            LoanCodec.putVarInt(payload, loanCreated.loanId());
+            LoanCodec.putString(payload, loanCreated.userEmail());
+            LoanCodec.putVarLong(payload, loanCreated.loanAmount());
+            LoanCodec.putDate(payload, loanCreated.loanStartDate());
+            LoanCodec.putVarInt(payload, loanCreated.loanTerm());
+            LoanCodec.putVarInt(payload, loanCreated.paymentFrequency());
+        } else if (event instanceof JournalEvent.LoanApproved loanApproved) {
+            payload.put(LOAN_APPROVED);
+            LoanCodec.putVarInt(payload, loanApproved.loanId());
+        } else if (event instanceof JournalEvent.LoanRepaid loanRepaid) {
+            payload.put(LOAN_REPAID);
+            LoanCodec.putVarInt(payload, loanRepaid.loanId());
+            LoanCodec.putVarInt(payload, loanRepaid.installment());
+            LoanCodec.putVarLong(payload, loanRepaid.amount());
+            LoanCodec.putDate(payload, loanRepaid.paymentDate());
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        record.putInt(0, payload.remaining()).putInt(4, (int) crc.getValue());
+        return record.position(0).limit(HEADER_BYTES + payload.remaining());
+    }
+
+    private static int maxEncodedSize(JournalEvent event) {
+        // type byte plus up to four varints or dates of at most ten bytes each
+        int size = 1 + 40;
+        if (event instanceof JournalEvent.UserCreated userCreated) {
+            size += LoanCodec.maxEncodedSize(userCreated.email()) + LoanCodec.maxEncodedSize(userCreated.passwordHash());
+        } else if (event instanceof JournalEvent.LoanCreated loanCreated) {
+            size += 10 + LoanCodec.maxEncodedSize(loanCreated.userEmail());
+        }
+        return size;
+    }
+
+    private static JournalEvent decode(ByteBuffer payload) {
+        byte type = payload.get();
+        switch (type) {
+            case USER_CREATED:
+                return new JournalEvent.UserCreated(LoanCodec.getString(payload), LoanCodec.getString(payload),
+                        payload.get() == 1);
+            case LOAN_CREATED:
+                return new JournalEvent.LoanCreated(LoanCodec.getVarInt(payload), LoanCodec.getString(payload),
+                        LoanCodec.getVarLong(payload), LoanCodec.getDate(payload), LoanCodec.getVarInt(payload),
+                        LoanCodec.getVarInt(payload));
+            case LOAN_APPROVED:
+                return new JournalEvent.LoanApproved(LoanCodec.getVarInt(payload));
+            case LOAN_REPAID:
+                return new JournalEvent.LoanRepaid(LoanCodec.getVarInt(payload), LoanCodec.getVarInt(payload),
+                        LoanCodec.getVarLong(payload), LoanCodec.getDate(payload));
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+}
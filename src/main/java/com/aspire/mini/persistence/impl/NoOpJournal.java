@@ -0,0 +1,44 @@
+package com.aspire.mini.persistence.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.aspire.mini.persistence.Journal;
+import com.aspire.mini.persistence.JournalEvent;
+
+/**
+ * Journal used when persistence is disabled; nothing is recorded and nothing
+ * is replayed.
+ */
+public class NoOpJournal implements Journal {
+
+    @Override
+    public long append(JournalEvent event) {
+        return 0;
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+    }
+
+    @Override
+    public CompletableFuture<Void> whenDurable(long sequence) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void replay(Consumer<JournalEvent> consumer) {
+    }
+
+    @Override
+    public void rotate() {
+    }
+
+    @Override
+    public void discardArchived() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
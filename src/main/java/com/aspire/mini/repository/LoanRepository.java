@@ -0,0 +1,44 @@
+package com.aspire.mini.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.model.Loan;
+
+public interface LoanRepository {
+
+    Loan findById(Integer loanId);
+
+    Collection<Loan> findAll();
+
+    Collection<Loan> findAllByUserEmail(String email);
+
+    Collection<Loan> findAllByStatus(LoanStatus status);
+
+    Collection<Loan> findAllByUserEmailAfter(String email, int loanId);
+
+    Collection<Loan> findAllByStatusAfter(LoanStatus status, int loanId);
+
+    Collection<Loan> findAllDueBetween(LocalDate from, LocalDate to);
+
+    Collection<Loan> findAllWithUnmissedInstallmentDueBefore(LocalDate to);
+
+    Loan save(Loan loan);
+
+    boolean isWithinLimits(String email, long loanAmount, long maxExposure, int maxOpenLoans);
+
+    boolean saveWithinLimits(Loan loan, long maxExposure, int maxOpenLoans);
+
+    void updateStatus(Loan loan, LoanStatus status);
+
+    void updateSchedule(Loan loan);
+
+    long countByStatus(LoanStatus status);
+
+    long sumOutstandingBalance();
+
+    long countPendingInstallments();
+
+    int count();
+}
@@ -0,0 +1,16 @@
+package com.aspire.mini.repository;
+
+import java.util.Collection;
+
+import com.aspire.mini.model.User;
+
+public interface UserRepository {
+
+	User findByEmail(String email);
+
+	boolean saveIfAbsent(User user);
+
+	Collection<User> findAll();
+
+	int count();
+}
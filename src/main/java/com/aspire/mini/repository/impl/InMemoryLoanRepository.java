@@ -0,0 +1,393 @@
+package com.aspire.mini.repository.impl;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.PaymentSchedule;
+import com.aspire.mini.repository.LoanRepository;
+
+/**
+ * In-memory loan store indexed by loan id, by user email, by loan status and,
+ * for approved loans, by the due date of their next pending installment and of
+ * their next installment not yet found missed, so that lookups never have to
+ * scan the whole book. Portfolio totals are kept in
+ * {@link LongAdder}s updated on every change, so reading them is constant time
+ * and updating them never contends between loans; the totals are read one at
+ * a time and may not reflect a change in progress. Each user's exposure, the
+ * number and remaining balance of their open loans, is kept the same way so
+ * that loan limits are checked without looking at the user's loans.
+ * <p>
+ * All indexes are concurrent and may be read while loans are being added. The
+ * repository does not guard the loans themselves; callers serialize changes to
+ * a given loan, including {@link #updateStatus(Loan, LoanStatus)}.
+ */
+public class InMemoryLoanRepository implements LoanRepository {
+
+    /**
+     * Orders approved loans by their next due date, then by loan ID, so that a
+     * range of days is a contiguous range of the due index.
+     */
+    private record DueKey(LocalDate dueDate, int loanId) implements Comparable<DueKey> {
+
+        @Override
+        public int compareTo(DueKey other) {
+            int byDate = this.dueDate.compareTo(other.dueDate);
+            return byDate != 0 ? byDate : Integer.compare(this.loanId, other.loanId);
+        }
+    }
+
+    /**
+     * What an open loan adds to the due indexes, the portfolio totals and its
+     * user's exposure, so that a change to the loan can be applied as a
+     * difference. Only approved loans are due and count towards the totals.
+     */
+    private record Outstanding(boolean approved, LocalDate dueDate, LocalDate unmissedDueDate, long balance,
+            int pendingInstallments) {
+    }
+
+    /**
+     * A user's open loans, pending or approved, and what is left to pay on them.
+     */
+    private record Exposure(int openLoans, long balance) {
+
+        private Exposure plus(Exposure other) {
+            Exposure sum = new Exposure(this.openLoans + other.openLoans, this.balance + other.balance);
+            // users without open loans are dropped from the ledger
+            return sum.openLoans == 0 && sum.balance == 0 ? null : sum;
+        }
+    }
+
+    private final ConcurrentMap<Integer, Loan> loansById = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Integer, Loan>> loansByEmail = new ConcurrentHashMap<>();
+
+    private final Map<LoanStatus, ConcurrentNavigableMap<Integer, Loan>> loansByStatus = new EnumMap<>(LoanStatus.class);
+
+    private final ConcurrentNavigableMap<DueKey, Loan> loansByDueDate = new ConcurrentSkipListMap<>();
+
+    // a delinquent loan moves on to its next due date here as each installment is found missed
+    private final ConcurrentNavigableMap<DueKey, Loan> loansByUnmissedDueDate = new ConcurrentSkipListMap<>();
+
+    // what each open loan was last counted and indexed with
+    private final ConcurrentMap<Integer, Outstanding> outstandingLoans = new ConcurrentHashMap<>();
+
+    private final Map<LoanStatus, LongAdder> loanCounts = new EnumMap<>(LoanStatus.class);
+
+    private final LongAdder outstandingBalance = new LongAdder();
+
+    private final LongAdder pendingInstallments = new LongAdder();
+
+    private final ConcurrentMap<String, Exposure> exposures = new ConcurrentHashMap<>();
+
+    public InMemoryLoanRepository() {
+        for (LoanStatus status : LoanStatus.values()) {
+            this.loansByStatus.put(status, new ConcurrentSkipListMap<>());
+            this.loanCounts.put(status, new LongAdder());
+        }
+    }
+
+    /**
+     * Retrieves a loan by its ID.
+     *
+     * @param loanId The ID of the loan.
+     * @return The loan, or null if no loan exists with the given ID.
+     */
+    @Override
+    public Loan findById(Integer loanId) {
+        return this.loansById.get(loanId);
+    }
+
+    /**
+     * Retrieves every loan. Loans added concurrently may or may not be
+     * included.
+     *
+     * @return All loans, in no particular order.
+     */
+    @Override
+    public Collection<Loan> findAll() {
+        return this.loansById.values();
+    }
+
+    /**
+     * Retrieves all loans belonging to a user, ordered by loan ID.
+     *
+     * @param email The email of the user.
+     * @return The user's loans, or an empty collection if there are none.
+     */
+    @Override
+    public Collection<Loan> findAllByUserEmail(String email) {
+        ConcurrentNavigableMap<Integer, Loan> userLoans = this.loansByEmail.get(email);
+        return userLoans == null ? Collections.emptyList() : userLoans.values();
+    }
+
+    /**
+     * Retrieves all loans currently in the given status, ordered by loan ID. A
+     * loan changing status concurrently may or may not be included.
+     *
+     * @param status The loan status.
+     * @return The loans in that status.
+     */
+    @Override
+    public Collection<Loan> findAllByStatus(LoanStatus status) {
+        return this.loansByStatus.get(status).values();
+    }
+
+    /**
+     * Retrieves a user's loans with an ID greater than the given one, ordered by
+     * loan ID. Finding the first loan takes logarithmic time however many loans
+     * precede it.
+     *
+     * @param email  The email of the user.
+     * @param loanId The ID after which to start.
+     * @return The user's loans after the given ID.
+     */
+    @Override
+    public Collection<Loan> findAllByUserEmailAfter(String email, int loanId) {
+        ConcurrentNavigableMap<Integer, Loan> userLoans = this.loansByEmail.get(email);
+        return userLoans == null ? Collections.emptyList() : userLoans.tailMap(loanId, false).values();
+    }
+
+    /**
+     * Retrieves the loans currently in the given status with an ID greater than
+     * the given one, ordered by loan ID. Finding the first loan takes
+     * logarithmic time however many loans precede it.
+     *
+     * @param status The loan status.
+     * @param loanId The ID after which to start.
+     * @return The loans in that status after the given ID.
+     */
+    @Override
+    public Collection<Loan> findAllByStatusAfter(LoanStatus status, int loanId) {
+        return this.loansByStatus.get(status).tailMap(loanId, false).values();
+    }
+
+    /**
+     * Retrieves the approved loans whose next pending installment is due in the
+     * given range of days, ordered by due date and then loan ID. Finding the
+     * first loan takes logarithmic time, so a range costs time proportional to
+     * the installments due in it rather than to the size of the book.
+     *
+     * @param from The first due date to include, or null for no lower bound.
+     * @param to   The due date to stop before.
+     * @return The loans due in the range.
+     */
+    @Override
+    public Collection<Loan> findAllDueBetween(LocalDate from, LocalDate to) {
+        DueKey end = new DueKey(to, Integer.MIN_VALUE);
+        return from == null ? this.loansByDueDate.headMap(end).values()
+                : this.loansByDueDate.subMap(new DueKey(from, Integer.MIN_VALUE), end).values();
+    }
+
+    /**
+     * Retrieves the approved loans with a pending installment due before the
+     * given day that has not been found missed yet, ordered by that
+     * installment's due date and then loan ID. Each missed installment moves its
+     * loan on to the next one, so this costs time proportional to the
+     * installments not yet found missed rather than to the number of loans in
+     * arrears.
+     *
+     * @param to The due date to stop before.
+     * @return The loans with an installment not yet found missed.
+     */
+    @Override
+    public Collection<Loan> findAllWithUnmissedInstallmentDueBefore(LocalDate to) {
+        return this.loansByUnmissedDueDate.headMap(new DueKey(to, Integer.MIN_VALUE)).values();
+    }
+
+    /**
+     * Stores a new loan and adds it to every index and total, including its
+     * user's exposure.
+     *
+     * @param loan The loan to store. Its ID, email and status must be set.
+     * @return The stored loan.
+     */
+    @Override
+    public Loan save(Loan loan) {
+        index(loan);
+        track(loan, false);
+        return loan;
+    }
+
+    /**
+     * Checks whether one more loan would keep a user within both limits, as things
+     * stand now. Concurrent requests may still take the user over by the time the
+     * loan is saved, which {@link #saveWithinLimits} guards against.
+     *
+     * @param email        The email of the user.
+     * @param loanAmount   The amount of the new loan, in minor units.
+     * @param maxExposure  The most the user may owe on open loans, in minor units.
+     * @param maxOpenLoans The most open loans the user may have.
+     * @return true if the loan would currently be within the limits.
+     */
+    @Override
+    public boolean isWithinLimits(String email, long loanAmount, long maxExposure, int maxOpenLoans) {
+        Exposure current = this.exposures.get(email);
+        long balance = (current == null ? 0 : current.balance()) + loanAmount;
+        int openLoans = (current == null ? 0 : current.openLoans()) + 1;
+        return balance <= maxExposure && openLoans <= maxOpenLoans;
+    }
+
+    /**
+     * Stores a new loan unless it would take its user's open loans, pending or
+     * approved, over either limit. The check and the update of the user's
+     * exposure are one atomic step, so concurrent requests of the same user can
+     * never together exceed the limits. Takes constant time however many loans
+     * the user has.
+     *
+     * @param loan         The loan to store. Its ID, email and status must be set.
+     * @param maxExposure  The most the user may owe on open loans, in minor units.
+     * @param maxOpenLoans The most open loans the user may have.
+     * @return true if the loan was stored, false if it would exceed a limit.
+     */
+    @Override
+    public boolean saveWithinLimits(Loan loan, long maxExposure, int maxOpenLoans) {
+        Exposure added = new Exposure(1, loan.getRemainingBalance());
+        while (true) {
+            Exposure current = this.exposures.get(loan.getUserEmail());
+            Exposure total = current == null ? added : current.plus(added);
+            if (total.balance() > maxExposure || total.openLoans() > maxOpenLoans) {
+                return false;
+            }
+            if (current == null ? this.exposures.putIfAbsent(loan.getUserEmail(), total) == null
+                    : this.exposures.replace(loan.getUserEmail(), current, total)) {
+                break;
+            }
+        }
+        index(loan);
+        track(loan, true);
+        return true;
+    }
+
+    private void index(Loan loan) {
+        this.loansById.put(loan.getLoanId(), loan);
+        this.loansByEmail.computeIfAbsent(loan.getUserEmail(), email -> new ConcurrentSkipListMap<>())
+                .put(loan.getLoanId(), loan);
+        this.loansByStatus.get(loan.getLoanStatus()).put(loan.getLoanId(), loan);
+        this.loanCounts.get(loan.getLoanStatus()).increment();
+    }
+
+    /**
+     * Moves a loan to a new status, keeping the status index and the portfolio
+     * totals in sync.
+     *
+     * @param loan   The loan to update.
+     * @param status The new status of the loan.
+     */
+    @Override
+    public void updateStatus(Loan loan, LoanStatus status) {
+        this.loansByStatus.get(loan.getLoanStatus()).remove(loan.getLoanId());
+        this.loanCounts.get(loan.getLoanStatus()).decrement();
+        loan.setLoanStatus(status);
+        this.loansByStatus.get(status).put(loan.getLoanId(), loan);
+        this.loanCounts.get(status).increment();
+        updateSchedule(loan);
+    }
+
+    /**
+     * Brings the due indexes, the portfolio totals and the user's exposure up to
+     * date with a loan's balance and schedule: an approved loan is indexed by the
+     * due dates of its next pending installment and of its next installment not
+     * yet found missed, and counted with its remaining balance and pending
+     * installments, and every open loan counts towards its user's exposure. Only
+     * the difference to what was counted before is applied, so this takes
+     * constant time. Called after every repayment and every missed installment.
+     *
+     * @param loan The loan to update.
+     */
+    @Override
+    public void updateSchedule(Loan loan) {
+        track(loan, false);
+    }
+
+    private void track(Loan loan, boolean exposureReserved) {
+        Outstanding outstanding = outstanding(loan);
+        Outstanding previous = outstanding == null ? this.outstandingLoans.remove(loan.getLoanId())
+                : this.outstandingLoans.put(loan.getLoanId(), outstanding);
+        if (previous != null && previous.approved()) {
+            this.outstandingBalance.add(-previous.balance());
+            this.pendingInstallments.add(-previous.pendingInstallments());
+        }
+        if (outstanding != null && outstanding.approved()) {
+            this.outstandingBalance.add(outstanding.balance());
+            this.pendingInstallments.add(outstanding.pendingInstallments());
+        }
+        if (!exposureReserved) {
+            Exposure change = new Exposure(
+                    (outstanding == null ? 0 : 1) - (previous == null ? 0 : 1),
+                    (outstanding == null ? 0 : outstanding.balance()) - (previous == null ? 0 : previous.balance()));
+            if (change.openLoans() != 0 || change.balance() != 0) {
+                this.exposures.merge(loan.getUserEmail(), change, Exposure::plus);
+            }
+        }
+        reindex(this.loansByDueDate, loan, previous == null ? null : previous.dueDate(),
+                outstanding == null ? null : outstanding.dueDate());
+        reindex(this.loansByUnmissedDueDate, loan, previous == null ? null : previous.unmissedDueDate(),
+                outstanding == null ? null : outstanding.unmissedDueDate());
+    }
+
+    private static void reindex(ConcurrentNavigableMap<DueKey, Loan> index, Loan loan, LocalDate previousDueDate,
+            LocalDate dueDate) {
+        if (Objects.equals(previousDueDate, dueDate)) {
+            return;
+        }
+        if (previousDueDate != null) {
+            index.remove(new DueKey(previousDueDate, loan.getLoanId()));
+        }
+        if (dueDate != null) {
+            index.put(new DueKey(dueDate, loan.getLoanId()), loan);
+        }
+    }
+
+    private static Outstanding outstanding(Loan loan) {
+        if (loan.getLoanStatus().equals(LoanStatus.PAID)) {
+            return null;
+        }
+        boolean approved = loan.getLoanStatus().equals(LoanStatus.APPROVED);
+        PaymentSchedule schedule = loan.getPaymentSchedule();
+        return schedule == null ? new Outstanding(approved, null, null, loan.getRemainingBalance(), 0)
+                : new Outstanding(approved, approved ? schedule.nextDueDate() : null,
+                        approved ? schedule.nextUnmissedDueDate() : null, loan.getRemainingBalance(),
+                        schedule.getInstallmentCount() - schedule.getPaidCount());
+    }
+
+    /**
+     * @param status The loan status.
+     * @return The number of loans in that status.
+     */
+    @Override
+    public long countByStatus(LoanStatus status) {
+        return this.loanCounts.get(status).sum();
+    }
+
+    /**
+     * @return The remaining balance of all approved loans, in minor units.
+     */
+    @Override
+    public long sumOutstandingBalance() {
+        return this.outstandingBalance.sum();
+    }
+
+    /**
+     * @return The number of installments still pending on approved loans.
+     */
+    @Override
+    public long countPendingInstallments() {
+        return this.pendingInstallments.sum();
+    }
+
+    @Override
+    public int count() {
+        return this.loansById.size();
+    }
+}
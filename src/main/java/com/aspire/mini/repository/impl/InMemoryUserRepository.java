@@ -0,0 +1,62 @@
+package com.aspire.mini.repository.impl;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.aspire.mini.model.User;
+import com.aspire.mini.repository.UserRepository;
+
+/**
+ * In-memory user directory keyed by normalized email, so that lookups are
+ * constant time and two users can never share an email regardless of case or
+ * surrounding whitespace.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+	private final ConcurrentMap<String, User> usersByEmail = new ConcurrentHashMap<>();
+
+	/**
+	 * Retrieves a user by email, ignoring case and surrounding whitespace.
+	 *
+	 * @param email The email of the user.
+	 * @return The user, or null if no user exists with the given email.
+	 */
+	@Override
+	public User findByEmail(String email) {
+		return email == null ? null : this.usersByEmail.get(normalize(email));
+	}
+
+	/**
+	 * Stores a user unless a user with the same email already exists. The check
+	 * and the insert happen atomically.
+	 *
+	 * @param user The user to store.
+	 * @return true if the user was stored, false if the email is already taken.
+	 */
+	@Override
+	public boolean saveIfAbsent(User user) {
+		return this.usersByEmail.putIfAbsent(normalize(user.getEmail()), user) == null;
+	}
+
+	/**
+	 * Retrieves every user. Users added concurrently may or may not be included.
+	 *
+	 * @return All users, in no particular order.
+	 */
+	@Override
+	public Collection<User> findAll() {
+		return this.usersByEmail.values();
+	}
+
+	@Override
+	public int count() {
+		return this.usersByEmail.size();
+	}
+
+	private static String normalize(String email) {
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -1,10 +1,21 @@
 package com.aspire.mini.service;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import com.aspire.mini.dto.request.ApprovalRequestDTO;
+import com.aspire.mini.dto.request.LoanQueryDTO;
 import com.aspire.mini.dto.request.LoanRequestDTO;
 import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.request.RepaymentRequestDTO;
+import com.aspire.mini.dto.response.ApprovalResponseDTO;
+import com.aspire.mini.dto.response.LoanPageDTO;
 import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.dto.response.PortfolioResponseDTO;
+import com.aspire.mini.dto.response.RepaymentResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
 
 public interface LoanService {
 
@@ -16,7 +27,23 @@ public interface LoanService {
 
     List<LoanResponseDTO> getAllPendingLoans();
 
+    LoanPageDTO getLoansByEmail(String email, LoanQueryDTO loanQueryDTO);
+
+    LoanPageDTO getPendingLoans(LoanQueryDTO loanQueryDTO);
+
+    void exportLoans(LoanStatus status, boolean includePayments, Consumer<LoanResponseDTO> consumer);
+
+    List<LoanResponseDTO> getOverdueLoans(LocalDate asOf, boolean includePayments);
+
+    int sweepOverdueLoans(LocalDate today);
+
+    PortfolioResponseDTO getPortfolio();
+
     LoanResponseDTO approveLoan(Integer id);
 
+    CompletableFuture<ApprovalResponseDTO> approveLoans(ApprovalRequestDTO approvalRequestDTO);
+
     LoanResponseDTO repayLoan(Integer id, String email, PaymentRequestDTO paymentRequestDTO);
+
+    CompletableFuture<List<RepaymentResponseDTO>> repayLoans(List<RepaymentRequestDTO> repayments);
 }
@@ -1,42 +1,88 @@
 package com.aspire.mini.service.impl;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.aspire.mini.dto.request.ApprovalRequestDTO;
+import com.aspire.mini.dto.request.LoanQueryDTO;
 import com.aspire.mini.dto.request.LoanRequestDTO;
 import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.request.RepaymentRequestDTO;
+import com.aspire.mini.dto.response.ApprovalResponseDTO;
+import com.aspire.mini.dto.response.LoanPageDTO;
 import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.dto.response.PortfolioResponseDTO;
+import com.aspire.mini.dto.response.RepaymentResponseDTO;
 import com.aspire.mini.enums.LoanStatus;
-import com.aspire.mini.enums.PaymentStatus;
+import com.aspire.mini.enums.RepaymentResult;
+import com.aspire.mini.exception.LoanLimitExceededException;
+import com.aspire.mini.mapper.LoanMapper;
+import com.aspire.mini.persistence.Journal;
+import com.aspire.mini.persistence.JournalEvent;
+import com.aspire.mini.persistence.JournalEventHandler;
+import com.aspire.mini.repository.LoanRepository;
 import com.aspire.mini.service.LoanService;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.Money;
+import com.aspire.mini.utility.StripedLock;
+import com.aspire.mini.validator.LoanValidator;
 
 import lombok.extern.slf4j.Slf4j;
 
 import com.aspire.mini.model.Loan;
-import com.aspire.mini.model.Payment;
+import com.aspire.mini.model.PaymentSchedule;
 
 @Service
 @Slf4j
-public class LoanServiceImpl implements LoanService {
+public class LoanServiceImpl implements LoanService, JournalEventHandler {
 
-    private final List<Loan> loans;
+    private final LoanRepository loanRepository;
 
-    private final ModelMapper modelMapper;
+    private final LoanIdAllocator loanIdAllocator;
+
+    private final StripedLock loanLocks;
+
+    private final Journal journal;
+
+    private final LoanLimits loanLimits;
+
+    private final Executor repaymentExecutor;
 
     private final int PAYMENT_FREQUENCY = 7;
 
-    private final int DOUBLE_SCALE = 2;
+    // candidate loans looked at for one page once it holds a loan, so that a
+    // selective filter returns a short page and a cursor rather than scanning the
+    // whole book
+    public static final int MAX_SCANNED_PER_PAGE = 10_000;
+
+    public LoanServiceImpl(LoanRepository loanRepository, LoanIdAllocator loanIdAllocator, StripedLock loanLocks,
+            Journal journal, LoanLimits loanLimits, @Qualifier("repaymentExecutor") Executor repaymentExecutor) {
+        this.loanRepository = loanRepository;
+        this.loanIdAllocator = loanIdAllocator;
+        this.loanLocks = loanLocks;
+        this.journal = journal;
+        this.loanLimits = loanLimits;
+        this.repaymentExecutor = repaymentExecutor;
+    }
 
-    public LoanServiceImpl(List<Loan> loans, ModelMapper modelMapper) {
-        this.loans = loans;
-        this.modelMapper = modelMapper;
+    /**
+     * A change applied under a loan's lock, with the journal sequence number to
+     * wait on once the lock is released.
+     */
+    private record JournaledChange(LoanResponseDTO loan, long sequence) {
     }
 
     /**
@@ -51,25 +97,106 @@ public class LoanServiceImpl implements LoanService {
     public LoanResponseDTO approveLoan(Integer id) {
         try {
             log.info("Loan approval for id " + id);
-            Loan loanToApprove = this.loans.stream()
-                    .filter(loan -> loan.getLoanId().equals(id)
-                            && loan.getLoanStatus().equals(LoanStatus.PENDING))
-                    .findFirst()
-                    .orElse(null);
-
-            if (loanToApprove != null) {
-                loanToApprove.setLoanStatus(LoanStatus.APPROVED);
-                return loanToDto(loanToApprove);
-            } else {
+            Loan loanToApprove = this.loanRepository.findById(id);
+            JournaledChange approval = loanToApprove == null ? null
+                    : this.loanLocks.withLock(id, () -> {
+                        if (!approve(loanToApprove)) {
+                            return null;
+                        }
+                        long sequence = this.journal.append(new JournalEvent.LoanApproved(id));
+                        return new JournaledChange(loanToDto(loanToApprove), sequence);
+                    });
+
+            if (approval == null) {
                 log.error("Loan not found for id " + id);
                 return null;
             }
+            this.journal.awaitDurable(approval.sequence());
+            return approval.loan();
         } catch (Exception e) {
             log.error(e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Approves many pending loans at once, either the listed ones or every
+     * pending loan matching the filters. Without listed IDs this is a single
+     * pass over the pending loans rather than a lookup per loan. The whole
+     * batch waits for the journal once at the end, without blocking the
+     * calling thread.
+     *
+     * @param approvalRequestDTO The loan IDs and/or filters selecting the loans.
+     * @return A future of the IDs of the approved loans, and of the listed loans
+     *         that could not be approved, completed once the approvals are on
+     *         disk.
+     */
+    @Override
+    public CompletableFuture<ApprovalResponseDTO> approveLoans(ApprovalRequestDTO approvalRequestDTO) {
+        List<Integer> approvedLoanIds = new ArrayList<>();
+        List<Integer> failedLoanIds = new ArrayList<>();
+        long lastSequence = 0;
+        if (approvalRequestDTO.getLoanIds() != null) {
+            for (Integer id : approvalRequestDTO.getLoanIds()) {
+                Loan loan = id == null ? null : this.loanRepository.findById(id);
+                long sequence = loan == null || !matches(loan, approvalRequestDTO) ? -1 : approveAndJournal(loan);
+                if (sequence < 0) {
+                    failedLoanIds.add(id);
+                } else {
+                    approvedLoanIds.add(id);
+                    lastSequence = sequence;
+                }
+            }
+        } else {
+            for (Loan loan : this.loanRepository.findAllByStatus(LoanStatus.PENDING)) {
+                if (matches(loan, approvalRequestDTO)) {
+                    long sequence = approveAndJournal(loan);
+                    // a loan approved concurrently is simply no longer pending
+                    if (sequence >= 0) {
+                        approvedLoanIds.add(loan.getLoanId());
+                        lastSequence = sequence;
+                    }
+                }
+            }
+        }
+        log.info("Approved " + approvedLoanIds.size() + " loans, " + failedLoanIds.size() + " failed");
+        ApprovalResponseDTO approval = new ApprovalResponseDTO(approvedLoanIds, failedLoanIds);
+        return this.journal.whenDurable(lastSequence).thenApply(durable -> approval);
+    }
+
+    /**
+     * Checks a loan against the approval filters. The amount and start date of a
+     * loan never change, so no lock is needed.
+     */
+    private boolean matches(Loan loan, ApprovalRequestDTO approvalRequestDTO) {
+        return matches(loan, null, approvalRequestDTO.getMaxLoanAmount(), approvalRequestDTO.getStartDateFrom(),
+                approvalRequestDTO.getStartDateTo());
+    }
+
+    /**
+     * Checks a loan's amount and start date against inclusive bounds, any of
+     * which may be null. Both values are fixed when the loan is requested, so
+     * no lock is needed.
+     */
+    private boolean matches(Loan loan, Long minAmount, Long maxAmount, LocalDate startDateFrom,
+            LocalDate startDateTo) {
+        return (minAmount == null || loan.getLoanAmount() >= minAmount)
+                && (maxAmount == null || loan.getLoanAmount() <= maxAmount)
+                && (startDateFrom == null || !loan.getLoanStartDate().isBefore(startDateFrom))
+                && (startDateTo == null || !loan.getLoanStartDate().isAfter(startDateTo));
+    }
+
+    /**
+     * Approves a loan under its lock and journals the approval.
+     *
+     * @return The journal sequence number of the approval, or -1 if the loan was
+     *         not pending.
+     */
+    private long approveAndJournal(Loan loan) {
+        return this.loanLocks.withLock(loan.getLoanId(),
+                () -> approve(loan) ? this.journal.append(new JournalEvent.LoanApproved(loan.getLoanId())) : -1L);
+    }
+
     /**
      * Retrieves a loan by its ID and user email, if it exists.
      *
@@ -81,14 +208,10 @@ public class LoanServiceImpl implements LoanService {
     @Override
     public LoanResponseDTO getLoanByIdAndEmail(Integer id, String email) {
         try {
-            Loan matchingLoan = this.loans.stream()
-                    .filter(loan -> loan.getLoanId().equals(id)
-                            && loan.getUserEmail().equals(email))
-                    .findFirst()
-                    .orElse(null);
-
-            if (matchingLoan != null) {
-                return loanToDto(matchingLoan);
+            Loan matchingLoan = this.loanRepository.findById(id);
+
+            if (matchingLoan != null && matchingLoan.getUserEmail().equals(email)) {
+                return lockedLoanToDto(matchingLoan);
             } else {
                 log.error("Loan not found for id " + id);
                 return null;
@@ -101,108 +224,320 @@ public class LoanServiceImpl implements LoanService {
 
     /**
      * Creates a new loan based on the provided loan request and associates it with
-     * the user's email.
+     * the user's email. The loan is only created if it keeps the user within the
+     * loan limits, checked in constant time against the user's running exposure.
      *
      * @param email          The email of the user requesting the loan.
      * @param loanRequestDTO The loan request data.
      * @return A LoanResponseDTO representing the newly created loan, or null if
      *         there was an error.
+     * @throws LoanLimitExceededException If the loan would take the user over
+     *                                    the loan limits.
      */
     @Override
     public LoanResponseDTO requestLoan(String email, LoanRequestDTO loanRequestDTO) {
         try {
-            Loan loan = new Loan();
-            loan.setLoanId(this.loans.size() + 1);
-            loan.setUserEmail(email);
-            loan.setLoanAmount(loanRequestDTO.getLoanAmount());
-            loan.setRemainingBalance(loanRequestDTO.getLoanAmount());
-            loan.setLoanStartDate(loanRequestDTO.getLoanStartDate());
-            loan.setLoanStatus(LoanStatus.PENDING);
-            loan.setPaymentFrequency(PAYMENT_FREQUENCY);
-            loan.setLoanTerm(loanRequestDTO.getLoanTerm());
-            loan.setPayments(createPayments(
+            // rejected up front so that a user at their limits does not use up loan
+            // ids; only a request that loses a race to the limits still leaves a gap
+            if (!this.loanRepository.isWithinLimits(email, loanRequestDTO.getLoanAmount(),
+                    this.loanLimits.getMaxExposure(), this.loanLimits.getMaxOpenLoans())) {
+                throw new LoanLimitExceededException("Loan would exceed the limits on open loans of " + email);
+            }
+            Loan loan = newLoan(
+                    this.loanIdAllocator.nextId(),
+                    email,
                     loanRequestDTO.getLoanAmount(),
-                    loanRequestDTO.getLoanTerm(),
                     loanRequestDTO.getLoanStartDate(),
-                    loan.getPaymentFrequency()));
-            this.loans.add(loan);
-            return loanToDto(loan);
+                    loanRequestDTO.getLoanTerm(),
+                    PAYMENT_FREQUENCY);
+            LoanResponseDTO loanResponseDTO = loanToDto(loan);
+            // saved and journaled under the loan's lock, so that its creation always
+            // precedes any approval or repayment in the journal, and a snapshot
+            // that sees the loan was taken after the creation was journaled
+            long sequence = this.loanLocks.withLock(loan.getLoanId(), () -> {
+                if (!this.loanRepository.saveWithinLimits(loan, this.loanLimits.getMaxExposure(),
+                        this.loanLimits.getMaxOpenLoans())) {
+                    throw new LoanLimitExceededException("Loan would exceed the limits on open loans of " + email);
+                }
+                return this.journal.append(new JournalEvent.LoanCreated(loan.getLoanId(), email,
+                        loan.getLoanAmount(), loan.getLoanStartDate(), loan.getLoanTerm(),
+                        loan.getPaymentFrequency()));
+            });
+            this.journal.awaitDurable(sequence);
+            return loanResponseDTO;
+        } catch (LoanLimitExceededException e) {
+            log.info(e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error(e.getMessage());
             return null;
         }
     }
 
+    private Loan newLoan(int loanId, String email, long loanAmount, LocalDate loanStartDate, int loanTerm,
+            int paymentFrequency) {
+        Loan loan = new Loan();
+        loan.setLoanId(loanId);
+        loan.setUserEmail(email);
+        loan.setLoanAmount(loanAmount);
+        loan.setRemainingBalance(loanAmount);
+        loan.setLoanStartDate(loanStartDate);
+        loan.setLoanStatus(LoanStatus.PENDING);
+        loan.setPaymentFrequency(paymentFrequency);
+        loan.setLoanTerm(loanTerm);
+        loan.setPaymentSchedule(PaymentSchedule.create(loanAmount, loanTerm, loanStartDate, paymentFrequency));
+        return loan;
+    }
+
     /**
-     * Converts a double value to the specified decimal scale.
+     * Retrieves a list of loans associated with a user's email.
      *
-     * @param value The double value to be scaled.
-     * @return The scaled double value.
+     * @param email The email of the user whose loans are to be retrieved.
+     * @return A List of LoanResponseDTO objects representing the user's loans, or
+     *         an empty list if none are found.
      */
-    private Double doubleWithScale(Double value) {
-        return BigDecimal.valueOf(value).setScale(DOUBLE_SCALE, RoundingMode.HALF_UP).doubleValue();
+    @Override
+    public List<LoanResponseDTO> getAllLoansByEmail(String email) {
+        return allPages(query -> getLoansByEmail(email, query));
     }
 
     /**
-     * Creates a list of Payment objects for a loan based on the loan amount, loan
-     * term, start date, and payment frequency.
+     * Retrieves one page of a user's loans matching the query, ordered by loan
+     * ID. The page starts right after the cursor in the user's loan index, so
+     * its cost does not depend on how many loans come before it.
      *
-     * @param loanAmount       The total loan amount.
-     * @param loanTerm         The loan term in weeks.
-     * @param loanStartDate    The start date of the loan.
-     * @param paymentFrequency The frequency of payments in days.
-     * @return A List of Payment objects representing the loan payments, or null if
-     *         there was an error.
+     * @param email        The email of the user whose loans are to be retrieved.
+     * @param loanQueryDTO The cursor, page size and filters.
+     * @return The page of loans and the cursor of the next page, or an empty
+     *         page if an error occurs.
      */
-    private List<Payment> createPayments(
-            double loanAmount, int loanTerm, LocalDate loanStartDate, int paymentFrequency) {
+    @Override
+    public LoanPageDTO getLoansByEmail(String email, LoanQueryDTO loanQueryDTO) {
         try {
-            List<Payment> payments = new ArrayList<Payment>();
-            double remainingPayment = loanAmount;
-            for (int i = 1; i <= loanTerm; i++) {
-                Double paymentAmount = doubleWithScale(loanAmount / loanTerm);
-                Payment payment = new Payment(
-                        loanStartDate.plusDays(i * paymentFrequency),
-                        PaymentStatus.PENDING,
-                        paymentAmount);
-                remainingPayment -= paymentAmount;
-                payments.add(payment);
-            }
-            if (remainingPayment > 0.0) {
-                payments.get(0).setAmount(doubleWithScale(payments.get(0).getAmount() + remainingPayment));
-            }
-            return payments;
+            int cursor = loanQueryDTO.getCursor() == null ? 0 : loanQueryDTO.getCursor();
+            return page(this.loanRepository.findAllByUserEmailAfter(email, cursor), loanQueryDTO,
+                    loanQueryDTO.getStatus());
         } catch (Exception e) {
             log.error(e.getMessage());
-            return null;
+            return new LoanPageDTO(new ArrayList<>(), null);
         }
-
     }
 
     /**
-     * Retrieves a list of loans associated with a user's email.
+     * Retrieves one page of pending loans matching the query, ordered by loan
+     * ID. The page starts right after the cursor in the pending loan index, so
+     * its cost does not depend on how many loans come before it. The status
+     * filter of the query is ignored.
      *
-     * @param email The email of the user whose loans are to be retrieved.
-     * @return A List of LoanResponseDTO objects representing the user's loans, or
-     *         an empty list if none are found.
+     * @param loanQueryDTO The cursor, page size and filters.
+     * @return The page of loans and the cursor of the next page, or an empty
+     *         page if an error occurs.
      */
     @Override
-    public List<LoanResponseDTO> getAllLoansByEmail(String email) {
+    public LoanPageDTO getPendingLoans(LoanQueryDTO loanQueryDTO) {
         try {
-            List<LoanResponseDTO> customerLoans = this.loans.stream()
-                    .filter(loan -> loan.getUserEmail().equals(email))
-                    .map(this::loanToDto)
-                    .collect(Collectors.toList());
+            int cursor = loanQueryDTO.getCursor() == null ? 0 : loanQueryDTO.getCursor();
+            return page(this.loanRepository.findAllByStatusAfter(LoanStatus.PENDING, cursor), loanQueryDTO,
+                    LoanStatus.PENDING);
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return new LoanPageDTO(new ArrayList<>(), null);
+        }
+    }
 
-            return customerLoans;
+    /**
+     * Passes every loan, or every loan in the given status, to the consumer one
+     * at a time, each mapped under its lock. Nothing is collected, so memory use
+     * does not depend on the number of loans, and a consumer that blocks, e.g. on
+     * a slow client, slows the export down with it. Loans added or changing
+     * status concurrently may or may not be included.
+     * <p>
+     * Errors are not caught, so that a failed export is never mistaken for a
+     * complete one.
+     *
+     * @param status          The status of the loans to export, or null for all
+     *                        loans.
+     * @param includePayments Whether to include each loan's payments.
+     * @param consumer        Receives the loans, in no particular order.
+     */
+    @Override
+    public void exportLoans(LoanStatus status, boolean includePayments, Consumer<LoanResponseDTO> consumer) {
+        Collection<Loan> loans = status == null ? this.loanRepository.findAll()
+                : this.loanRepository.findAllByStatus(status);
+        for (Loan loan : loans) {
+            LoanResponseDTO loanResponseDTO = this.loanLocks.withLock(loan.getLoanId(),
+                    () -> status != null && !loan.getLoanStatus().equals(status) ? null
+                            : includePayments ? loanToDto(loan) : LoanMapper.toSummaryDto(loan));
+            if (loanResponseDTO != null) {
+                consumer.accept(loanResponseDTO);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the approved loans with an installment still pending that was
+     * due before the given day, ordered by that installment's due date. The
+     * loans come from the due date index, so this takes time proportional to the
+     * number of overdue loans rather than to the size of the book.
+     *
+     * @param asOf            The day the installments are overdue on.
+     * @param includePayments Whether to include each loan's payments.
+     * @return The overdue loans, or an empty list if an error occurs.
+     */
+    @Override
+    public List<LoanResponseDTO> getOverdueLoans(LocalDate asOf, boolean includePayments) {
+        try {
+            List<LoanResponseDTO> overdueLoans = new ArrayList<>();
+            for (Loan loan : this.loanRepository.findAllDueBetween(null, asOf)) {
+                // a repayment may have moved the loan on since it was read from the index
+                LoanResponseDTO loanResponseDTO = this.loanLocks.withLock(loan.getLoanId(),
+                        () -> !isOverdue(loan, asOf) ? null
+                                : includePayments ? loanToDto(loan) : LoanMapper.toSummaryDto(loan));
+                if (loanResponseDTO != null) {
+                    overdueLoans.add(loanResponseDTO);
+                }
+            }
+            return overdueLoans;
         } catch (Exception e) {
             log.error(e.getMessage());
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Marks every pending installment due before today as missed and reports
+     * each one. A marked installment shows as OVERDUE in the loan's payments and
+     * counts towards its overdueInstallments until it is paid. Each loan is
+     * found through the index of its next installment not yet found missed,
+     * and moves on to the following one as installments are marked, so a sweep
+     * costs time proportional to the installments it marks. A re-amortization
+     * gives the pending installments new due dates, so they are found missed
+     * again once those pass, even if they were backdated.
+     * <p>
+     * The marks are kept in memory only; after a restart the first sweep marks
+     * the missed installments again.
+     *
+     * @param today The current day; installments due before it are overdue.
+     * @return The number of installments found missed.
+     */
+    @Override
+    public int sweepOverdueLoans(LocalDate today) {
+        int missed = 0;
+        for (Loan loan : this.loanRepository.findAllWithUnmissedInstallmentDueBefore(today)) {
+            List<LocalDate> dueDates = this.loanLocks.withLock(loan.getLoanId(), () -> markMissed(loan, today));
+            for (LocalDate dueDate : dueDates) {
+                log.warn("Loan " + loan.getLoanId() + " missed the installment due " + dueDate);
+            }
+            missed += dueDates.size();
+        }
+        return missed;
+    }
+
+    /**
+     * Marks a loan's pending installments due before the given day as missed.
+     * The caller must hold the loan's lock.
+     *
+     * @return The due dates of the installments newly found missed.
+     */
+    private List<LocalDate> markMissed(Loan loan, LocalDate today) {
+        if (!loan.getLoanStatus().equals(LoanStatus.APPROVED)) {
+            return List.of();
+        }
+        List<LocalDate> missed = loan.getPaymentSchedule().markMissedInstallments(today);
+        if (!missed.isEmpty()) {
+            this.loanRepository.updateSchedule(loan);
+        }
+        return missed;
+    }
+
+    /**
+     * Retrieves the portfolio totals: the number of loans in each status and the
+     * remaining balance and pending installments of approved loans. The totals
+     * are maintained on every change, so this takes constant time however large
+     * the book is.
+     *
+     * @return The portfolio totals.
+     */
+    @Override
+    public PortfolioResponseDTO getPortfolio() {
+        Map<LoanStatus, Long> loanCounts = new EnumMap<>(LoanStatus.class);
+        for (LoanStatus status : LoanStatus.values()) {
+            loanCounts.put(status, this.loanRepository.countByStatus(status));
+        }
+        return new PortfolioResponseDTO(loanCounts, this.loanRepository.sumOutstandingBalance(),
+                this.loanRepository.countPendingInstallments());
+    }
+
+    /**
+     * Checks whether a loan has a pending installment due before the given day.
+     * The caller must hold the loan's lock.
+     */
+    private boolean isOverdue(Loan loan, LocalDate asOf) {
+        if (!loan.getLoanStatus().equals(LoanStatus.APPROVED)) {
+            return false;
+        }
+        LocalDate dueDate = loan.getPaymentSchedule().nextDueDate();
+        return dueDate != null && dueDate.isBefore(asOf);
+    }
+
+    /**
+     * Maps the loans matching the query's filters. A query with neither a limit
+     * nor a cursor gets every matching loan in one page without a cursor. A
+     * paged query gets loans until the page is full, or until
+     * {@link #MAX_SCANNED_PER_PAGE} candidates have been looked at and the page
+     * holds at least one loan, in which case it may be short but has a cursor.
+     * A page is never cut short while empty, so an empty page is always the
+     * last. Each loan's status is checked under its lock, since it may change
+     * while the page is built.
+     *
+     * @param loans        The candidate loans, ordered by loan ID.
+     * @param loanQueryDTO The cursor, page size and filters.
+     * @param status       The status the loans must be in, or null for any.
+     * @return The page, with a cursor if more candidate loans follow it.
+     */
+    private LoanPageDTO page(Collection<Loan> loans, LoanQueryDTO loanQueryDTO, LoanStatus status) {
+        boolean paged = loanQueryDTO.getLimit() != null || loanQueryDTO.getCursor() != null;
+        int limit = loanQueryDTO.getLimit() != null ? loanQueryDTO.getLimit()
+                : paged ? LoanValidator.DEFAULT_PAGE_SIZE : Integer.MAX_VALUE;
+        int maxScanned = paged ? MAX_SCANNED_PER_PAGE : Integer.MAX_VALUE;
+        Long minAmount = loanQueryDTO.getMinAmount() == null ? null : Money.toMinorUnits(loanQueryDTO.getMinAmount());
+        Long maxAmount = loanQueryDTO.getMaxAmount() == null ? null : Money.toMinorUnits(loanQueryDTO.getMaxAmount());
+        List<LoanResponseDTO> page = new ArrayList<>();
+        int scanned = 0;
+        Integer lastScannedLoanId = null;
+        for (Loan loan : loans) {
+            if (page.size() == limit || (scanned >= maxScanned && !page.isEmpty())) {
+                return new LoanPageDTO(page, lastScannedLoanId);
+            }
+            scanned++;
+            lastScannedLoanId = loan.getLoanId();
+            if (!matches(loan, minAmount, maxAmount, loanQueryDTO.getStartDateFrom(),
+                    loanQueryDTO.getStartDateTo())) {
+                continue;
+            }
+            LoanResponseDTO loanResponseDTO = this.loanLocks.withLock(loan.getLoanId(),
+                    () -> status != null && !loan.getLoanStatus().equals(status) ? null
+                            : loanQueryDTO.isIncludePayments() ? loanToDto(loan) : LoanMapper.toSummaryDto(loan));
+            if (loanResponseDTO != null) {
+                page.add(loanResponseDTO);
+            }
+        }
+        return new LoanPageDTO(page, null);
+    }
+
     private LoanResponseDTO loanToDto(Loan loan) {
-        return this.modelMapper.map(loan, LoanResponseDTO.class);
+        return LoanMapper.toDto(loan);
+    }
+
+    /**
+     * Maps a loan while holding its lock, so that the response never observes a
+     * repayment half way through.
+     *
+     * @param loan The loan to map.
+     * @return A LoanResponseDTO representing the loan.
+     */
+    private LoanResponseDTO lockedLoanToDto(Loan loan) {
+        return this.loanLocks.withLock(loan.getLoanId(), () -> loanToDto(loan));
     }
 
     /**
@@ -213,53 +548,52 @@ public class LoanServiceImpl implements LoanService {
      */
     @Override
     public List<LoanResponseDTO> getAllPendingLoans() {
-        try {
-            List<LoanResponseDTO> pendingLoans = this.loans.stream()
-                    .filter(loan -> loan.getLoanStatus().equals(LoanStatus.PENDING))
-                    .map(this::loanToDto)
-                    .collect(Collectors.toList());
+        return allPages(this::getPendingLoans);
+    }
 
-            return pendingLoans;
+    private static List<LoanResponseDTO> allPages(Function<LoanQueryDTO, LoanPageDTO> pages) {
+        LoanQueryDTO loanQueryDTO = new LoanQueryDTO();
+        loanQueryDTO.setLimit(LoanValidator.MAX_PAGE_SIZE);
+        List<LoanResponseDTO> loans = new ArrayList<>();
+        LoanPageDTO page;
+        do {
+            page = pages.apply(loanQueryDTO);
+            loans.addAll(page.getLoans());
+            loanQueryDTO.setCursor(page.getNextCursor());
+        } while (page.getNextCursor() != null);
+        return loans;
+    }
 
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            return new ArrayList<>();
+    /**
+     * Approves a pending loan. The caller must hold the loan's lock.
+     *
+     * @param loanToApprove The loan to approve.
+     * @return true if the loan was approved, false if it was not pending.
+     */
+    private boolean approve(Loan loanToApprove) {
+        if (!loanToApprove.getLoanStatus().equals(LoanStatus.PENDING)) {
+            return false;
         }
+        this.loanRepository.updateStatus(loanToApprove, LoanStatus.APPROVED);
+        return true;
     }
 
     /**
-     * Closes a loan by marking pending payments as paid and updating the loan's
-     * status.
+     * Closes a loan by paying its next pending installment with the final payment,
+     * dropping the installments after it and updating the loan's status.
      *
-     * @param loanToClosePosition The position of the loan to close in the list of
-     *                            loans.
-     * @param loanToClose         The loan to be closed.
-     * @param amount              The amount used to pay off the remaining balance
-     *                            of the loan.
-     * @return A LoanResponseDTO representing the closed loan, or null if the loan
-     *         was not found.
+     * @param loanToClose The loan to be closed.
+     * @param amount      The amount used to pay off the remaining balance of the
+     *                    loan.
      */
-    private LoanResponseDTO closeLoan(int loanToClosePosition, Loan loanToClose, double amount) {
-        int prepayTerm = -1;
-        for (int i = 0; i < loanToClose.getPayments().size(); i++) {
-            if (loanToClose.getPayments().get(i).getPaymentStatus().equals(PaymentStatus.PENDING)) {
-                loanToClose.getPayments().get(i).setAmount(amount);
-                loanToClose.getPayments().get(i).setPaymentStatus(PaymentStatus.PAID);
-                prepayTerm = i;
-                break;
-            }
-        }
-        if (prepayTerm != -1 || prepayTerm != loanToClose.getPayments().size() - 1) {
-            loanToClose.setPayments(loanToClose.getPayments().subList(0, prepayTerm + 1));
-        }
-        loanToClose.setLoanStatus(LoanStatus.PAID);
-        this.loans.set(loanToClosePosition, loanToClose);
-        return loanToDto(loanToClose);
+    private void closeLoan(Loan loanToClose, long amount) {
+        loanToClose.getPaymentSchedule().close(amount);
+        this.loanRepository.updateStatus(loanToClose, LoanStatus.PAID);
     }
 
     /**
      * Repays a loan with the specified ID and updates its payment status and
-     * remaining balance.
+     * remaining balance. Repayments on the same loan are applied one at a time.
      *
      * @param id                The ID of the loan to repay.
      * @param email             The email of the user making the repayment.
@@ -270,66 +604,171 @@ public class LoanServiceImpl implements LoanService {
      */
     @Override
     public LoanResponseDTO repayLoan(Integer id, String email, PaymentRequestDTO paymentRequestDTO) {
-        Loan loanToRepay = null;
-        int loanToRepayPosition = -1;
-        for (int i = 0; i < this.loans.size(); i++) {
-            if (this.loans.get(i).getLoanId().equals(id)
-                    && this.loans.get(i).getLoanStatus().equals(LoanStatus.APPROVED)
-                    && this.loans.get(i).getUserEmail().equals(email)) {
-                loanToRepay = this.loans.get(i);
-                loanToRepayPosition = i;
-                break;
-            }
-        }
+        Loan loanToRepay = this.loanRepository.findById(id);
         if (loanToRepay == null) {
             return null;
-        } else {
-            loanToRepay.setRemainingBalance(
-                    doubleWithScale(loanToRepay.getRemainingBalance() - paymentRequestDTO.getAmount()));
-            // if remaining balance is zero close the loan
-            if (loanToRepay.getRemainingBalance() <= 0.0) {
-                // close loan
-                return closeLoan(loanToRepayPosition, loanToRepay, paymentRequestDTO.getAmount());
+        }
+        JournaledChange repayment = this.loanLocks.withLock(id, () -> {
+            int installment = loanToRepay.getPaymentSchedule().getPaidCount();
+            if (!loanToRepay.getUserEmail().equals(email)
+                    || !repay(loanToRepay, paymentRequestDTO.getAmount(), paymentRequestDTO.getPaymentDate())) {
+                return null;
+            }
+            long sequence = this.journal.append(new JournalEvent.LoanRepaid(id, installment,
+                    paymentRequestDTO.getAmount(), paymentRequestDTO.getPaymentDate()));
+            return new JournaledChange(loanToDto(loanToRepay), sequence);
+        });
+        if (repayment == null) {
+            return null;
+        }
+        this.journal.awaitDurable(repayment.sequence());
+        return repayment.loan();
+    }
+
+    /**
+     * Applies a batch of repayments, possibly for many users and loans.
+     * Repayments are grouped per loan and applied in their original order
+     * within each loan, while different loans are processed in parallel on the
+     * repayment executor. Each loan's lock is taken once for all of its
+     * repayments, and the whole batch waits for the journal once at the end,
+     * without blocking the calling thread.
+     *
+     * @param repayments The repayments to apply.
+     * @return A future of one result per repayment, in the order of the request,
+     *         completed once the repayments are on disk.
+     */
+    @Override
+    public CompletableFuture<List<RepaymentResponseDTO>> repayLoans(List<RepaymentRequestDTO> repayments) {
+        RepaymentResponseDTO[] results = new RepaymentResponseDTO[repayments.size()];
+        Map<Integer, List<Integer>> repaymentsByLoan = new LinkedHashMap<>();
+        for (int i = 0; i < repayments.size(); i++) {
+            RepaymentRequestDTO repayment = repayments.get(i);
+            if (repayment == null || repayment.getLoanId() == null || repayment.getEmail() == null
+                    || repayment.getPaymentDate() == null || repayment.getAmount() == null
+                    || repayment.getAmount() < 0) {
+                results[i] = new RepaymentResponseDTO(
+                        repayment == null ? null : repayment.getLoanId(), RepaymentResult.INVALID, null, null);
             } else {
-                Payment currentPayment = null;
-                int currentPaymentPosition = -1;
-                for (int i = 0; i < loanToRepay.getPayments().size(); i++) {
-                    if (loanToRepay.getPayments().get(i).getPaymentStatus().equals(PaymentStatus.PENDING)) {
-                        currentPayment = loanToRepay.getPayments().get(i);
-                        currentPaymentPosition = i;
-                        break;
-                    }
-                }
-                if (currentPayment == null) {
-                    return null;
+                repaymentsByLoan.computeIfAbsent(repayment.getLoanId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+        List<CompletableFuture<Long>> sequences = new ArrayList<>(repaymentsByLoan.size());
+        for (Map.Entry<Integer, List<Integer>> loanRepayments : repaymentsByLoan.entrySet()) {
+            sequences.add(CompletableFuture.supplyAsync(() -> repayLoan(loanRepayments.getKey(),
+                    loanRepayments.getValue(), repayments, results), this.repaymentExecutor));
+        }
+        return CompletableFuture.allOf(sequences.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(applied -> this.journal.whenDurable(
+                        sequences.stream().mapToLong(CompletableFuture::join).max().orElse(0)))
+                .thenApply(durable -> List.of(results));
+    }
+
+    /**
+     * Applies the repayments of one loan in order under a single acquisition of
+     * its lock.
+     *
+     * @return The journal sequence number of the last applied repayment, or 0
+     *         if none was applied.
+     */
+    private long repayLoan(Integer id, List<Integer> indexes, List<RepaymentRequestDTO> repayments,
+            RepaymentResponseDTO[] results) {
+        Loan loanToRepay = this.loanRepository.findById(id);
+        if (loanToRepay == null) {
+            for (int index : indexes) {
+                results[index] = new RepaymentResponseDTO(id, RepaymentResult.NOT_FOUND, null, null);
+            }
+            return 0;
+        }
+        return this.loanLocks.withLock(id, () -> {
+            long sequence = 0;
+            for (int index : indexes) {
+                RepaymentRequestDTO repayment = repayments.get(index);
+                int installment = loanToRepay.getPaymentSchedule().getPaidCount();
+                if (!loanToRepay.getUserEmail().equals(repayment.getEmail())) {
+                    results[index] = new RepaymentResponseDTO(id, RepaymentResult.NOT_FOUND, null, null);
+                } else if (!repay(loanToRepay, repayment.getAmount(), repayment.getPaymentDate())) {
+                    results[index] = new RepaymentResponseDTO(id, RepaymentResult.REJECTED, null, null);
                 } else {
-                    if (currentPayment.getAmount().equals(paymentRequestDTO.getAmount())) {
-                        // no need to recalculate remaining payments
-                        currentPayment.setPaymentStatus(PaymentStatus.PAID);
-                        loanToRepay.getPayments().set(currentPaymentPosition, currentPayment);
-                        this.loans.set(loanToRepayPosition, loanToRepay);
-                        return loanToDto(loanToRepay);
-                    } else {
-                        // bigger payment made than required
-                        // updating this so that helps in future reference
-                        currentPayment.setAmount(paymentRequestDTO.getAmount());
-                        currentPayment.setPaymentStatus(PaymentStatus.PAID);
-                        loanToRepay.getPayments().set(currentPaymentPosition, currentPayment);
-                        List<Payment> paidPayments = loanToRepay
-                                .getPayments()
-                                .subList(0, currentPaymentPosition + 1);
-                        List<Payment> newPayments = createPayments(
-                                loanToRepay.getRemainingBalance(),
-                                loanToRepay.getLoanTerm() - currentPaymentPosition - 1,
-                                paymentRequestDTO.getPaymentDate(),
-                                loanToRepay.getPaymentFrequency());
-                        loanToRepay.setPayments(paidPayments);
-                        loanToRepay.getPayments().addAll(newPayments);
-                        this.loans.set(currentPaymentPosition, loanToRepay);
-                        return loanToDto(loanToRepay);
-                    }
+                    sequence = this.journal.append(new JournalEvent.LoanRepaid(id, installment,
+                            repayment.getAmount(), repayment.getPaymentDate()));
+                    results[index] = new RepaymentResponseDTO(id, RepaymentResult.APPLIED,
+                            loanToRepay.getRemainingBalance(), loanToRepay.getLoanStatus());
                 }
             }
+            return sequence;
+        });
+    }
+
+    /**
+     * Applies a repayment to an approved loan, closing it once the remaining
+     * balance is paid off. The caller must hold the loan's lock.
+     *
+     * @param loanToRepay The loan to repay.
+     * @param amount      The amount paid, in minor units.
+     * @param paymentDate The date of the payment.
+     * @return true if the repayment was applied, false if the loan is not
+     *         approved or has no installment left to pay.
+     */
+    private boolean repay(Loan loanToRepay, long amount, LocalDate paymentDate) {
+        if (!loanToRepay.getLoanStatus().equals(LoanStatus.APPROVED)) {
+            return false;
+        }
+        PaymentSchedule schedule = loanToRepay.getPaymentSchedule();
+        long remainingBalance = loanToRepay.getRemainingBalance() - amount;
+        // if remaining balance is zero close the loan
+        if (remainingBalance <= 0) {
+            loanToRepay.setRemainingBalance(remainingBalance);
+            closeLoan(loanToRepay, amount);
+            return true;
+        }
+        if (!schedule.hasPendingInstallment()) {
+            return false;
+        }
+        loanToRepay.setRemainingBalance(remainingBalance);
+        if (schedule.nextInstallmentAmount() == amount) {
+            // no need to recalculate remaining payments
+            schedule.payNextInstallment();
+        } else {
+            // a different amount was paid than required, spread the remaining
+            // balance over the remaining installments
+            schedule.payNextInstallmentAndReamortize(amount, remainingBalance, paymentDate);
+        }
+        this.loanRepository.updateSchedule(loanToRepay);
+        return true;
+    }
+
+    /**
+     * Applies a replayed journal event to the loan book. Events already
+     * reflected in the restored snapshot are skipped, and so are approvals and
+     * repayments of loans the book does not know, with a warning.
+     *
+     * @param event The replayed event.
+     */
+    @Override
+    public void apply(JournalEvent event) {
+        if (event instanceof JournalEvent.LoanCreated loanCreated) {
+            if (this.loanRepository.findById(loanCreated.loanId()) != null) {
+                return;
+            }
+            this.loanRepository.save(newLoan(loanCreated.loanId(), loanCreated.userEmail(), loanCreated.loanAmount(),
+                    loanCreated.loanStartDate(), loanCreated.loanTerm(), loanCreated.paymentFrequency()));
+            this.loanIdAllocator.advanceTo(loanCreated.loanId());
+        } else if (event instanceof JournalEvent.LoanApproved loanApproved) {
+            Loan loan = this.loanRepository.findById(loanApproved.loanId());
+            if (loan == null) {
+                log.warn("Skipped approval of unknown loan " + loanApproved.loanId() + " in the journal");
+                return;
+            }
+            this.loanLocks.withLock(loan.getLoanId(), () -> approve(loan));
+        } else if (event instanceof JournalEvent.LoanRepaid loanRepaid) {
+            Loan loan = this.loanRepository.findById(loanRepaid.loanId());
+            if (loan == null) {
+                log.warn("Skipped repayment of unknown loan " + loanRepaid.loanId() + " in the journal");
+                return;
+            }
+            this.loanLocks.withLock(loan.getLoanId(),
+                    () -> loan.getPaymentSchedule().getPaidCount() == loanRepaid.installment()
+                            && repay(loan, loanRepaid.amount(), loanRepaid.paymentDate()));
         }
     }
 }
@@ -0,0 +1,47 @@
+package com.aspire.mini.service.impl;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aspire.mini.service.LoanService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Marks missed installments in the background. Each run only reads the loans
+ * with an installment that fell due since it was last looked at, so running it
+ * often is cheap and each missed installment is reported once, shortly after
+ * midnight, and then shown as overdue until it is paid.
+ */
+@Component
+@Slf4j
+public class OverdueSweeper {
+
+    private final LoanService loanService;
+
+    private final boolean enabled;
+
+    public OverdueSweeper(LoanService loanService, @Value("${overdue.sweep.enabled:true}") boolean enabled) {
+        this.loanService = loanService;
+        this.enabled = enabled;
+    }
+
+    @Scheduled(initialDelayString = "${overdue.sweep.initial-delay-ms:60000}",
+            fixedDelayString = "${overdue.sweep.interval-ms:600000}")
+    public void scheduledSweep() {
+        if (!this.enabled) {
+            return;
+        }
+        try {
+            int missed = this.loanService.sweepOverdueLoans(LocalDate.now());
+            if (missed > 0) {
+                log.info("Overdue sweep found " + missed + " missed installments");
+            }
+        } catch (Exception e) {
+            log.error("Overdue sweep failed: " + e.getMessage());
+        }
+    }
+}
@@ -1,48 +1,44 @@
 package com.aspire.mini.service.impl;
 
-import java.time.Duration;
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
-
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
 import com.aspire.mini.dto.response.UserResponseDTO;
 import com.aspire.mini.enums.UserRole;
+import com.aspire.mini.mapper.UserMapper;
 import com.aspire.mini.model.User;
+import com.aspire.mini.persistence.Journal;
+import com.aspire.mini.persistence.JournalEvent;
+import com.aspire.mini.persistence.JournalEventHandler;
+import com.aspire.mini.repository.UserRepository;
 import com.aspire.mini.service.UserService;
 import com.aspire.mini.utility.AppUtils;
+import com.aspire.mini.utility.PasswordHasher;
 
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-public class UserServiceImpl implements UserService {
-
-	private final Duration tokenValidity;
+public class UserServiceImpl implements UserService, JournalEventHandler {
 
-	private final String signingKey;
+	private final UserRepository userRepository;
 
-	private final String tokenIssuer;
+	private final AppUtils appUtils;
 
-	private final List<User> users;
+	private final Journal journal;
 
-	private ModelMapper modelMapper;
+	private final PasswordHasher passwordHasher;
 
-	public UserServiceImpl(List<User> users, AppUtils appUtils, ModelMapper modelMapper) {
-		this.users = users;
-		this.tokenValidity = Duration.ofHours(appUtils.getTokenExpiryHours());
-		this.signingKey = appUtils.getSigningKey();
-		this.tokenIssuer = appUtils.getTokenIssuer();
-		this.modelMapper = modelMapper;
+	public UserServiceImpl(UserRepository userRepository, AppUtils appUtils, Journal journal,
+			PasswordHasher passwordHasher) {
+		this.userRepository = userRepository;
+		this.appUtils = appUtils;
+		this.journal = journal;
+		this.passwordHasher = passwordHasher;
 	}
 
 	/**
 	 * Create a new user with the provided email, password, and administrative
-	 * privileges.
+	 * privileges. Only a salted hash of the password is stored.
 	 *
 	 * @param email    The email of the new user.
 	 * @param password The password of the new user.
@@ -52,12 +48,13 @@ public class UserServiceImpl implements UserService {
 	 */
 	@Override
 	public UserResponseDTO createUser(String email, String password, Boolean isAdmin) {
-		if (doesUserExist(email)) {
+		User user = new User(email, this.passwordHasher.hash(password), isAdmin);
+		if (!this.userRepository.saveIfAbsent(user)) {
 			log.error("User already exists");
 			return null;
 		}
-		User user = new User(email, password, isAdmin);
-		this.users.add(user);
+		this.journal.awaitDurable(
+				this.journal.append(new JournalEvent.UserCreated(email, user.getPasswordHash(), isAdmin)));
 		log.info("User created successfully");
 		return userToDto(user);
 	}
@@ -74,13 +71,8 @@ public class UserServiceImpl implements UserService {
 	@Override
 	public String authenticateUser(String email, String password) {
 		try {
-			if (!doesUserExist(email))
-				return AppUtils.USER_DOES_NOT_EXIST;
 			User existingUser = verifyCredentialsAndReturnUser(email, password);
-			String jwt = Jwts.builder().setIssuer(tokenIssuer).setSubject(email)
-					.setExpiration(new Date(System.currentTimeMillis() + tokenValidity.toMillis()))
-					.claim("role", existingUser.isAdmin() ? UserRole.ADMIN : UserRole.BASIC)
-					.signWith(Keys.hmacShaKeyFor(signingKey.getBytes())).compact();
+			String jwt = this.appUtils.issueToken(existingUser.getEmail(), existingUser.isAdmin() ? UserRole.ADMIN : UserRole.BASIC);
 			log.info("Authentication successful");
 			return jwt;
 		} catch (RuntimeException e) {
@@ -89,24 +81,24 @@ public class UserServiceImpl implements UserService {
 	}
 
 	/**
-	 * Map a User object to a UserResponseDTO using ModelMapper.
+	 * Apply a replayed journal event to the user directory.
 	 *
-	 * @param user The User object to be mapped.
-	 * @return A UserResponseDTO representing the mapped user.
+	 * @param event The replayed event.
 	 */
-	private UserResponseDTO userToDto(User user) {
-		return this.modelMapper.map(user, UserResponseDTO.class);
+	@Override
+	public void apply(JournalEvent event) {
+		if (event instanceof JournalEvent.UserCreated userCreated)
+			this.userRepository.saveIfAbsent(new User(userCreated.email(), userCreated.passwordHash(), userCreated.isAdmin()));
 	}
 
 	/**
-	 * Check if a user with the provided email already exists.
+	 * Map a User object to a UserResponseDTO.
 	 *
-	 * @param email The email to check.
-	 * @return true if a user with the email exists, false otherwise.
+	 * @param user The User object to be mapped.
+	 * @return A UserResponseDTO representing the mapped user.
 	 */
-	private boolean doesUserExist(String email) {
-		return this.users.stream().filter(user -> user.getEmail().equals(email)).collect(Collectors.toList())
-				.size() > 0;
+	private UserResponseDTO userToDto(User user) {
+		return UserMapper.toDto(user);
 	}
 
 	/**
@@ -116,15 +108,16 @@ public class UserServiceImpl implements UserService {
 	 * @param password The password of the user to verify.
 	 * @return The User object if credentials are valid, or throw an exception if
 	 *         not.
-	 * @throws RuntimeException If credentials are invalid.
+	 * @throws RuntimeException If the user does not exist or the credentials are
+	 *                          invalid.
 	 */
 	private User verifyCredentialsAndReturnUser(String email, String password) {
-		List<User> usersFound = this.users.stream()
-				.filter(user -> user.getEmail().equals(email) && user.getPassword().equals(password))
-				.collect(Collectors.toList());
-		if (usersFound.size() != 1)
+		User existingUser = this.userRepository.findByEmail(email);
+		if (existingUser == null)
+			throw new RuntimeException(AppUtils.USER_DOES_NOT_EXIST);
+		if (!this.passwordHasher.matches(password, existingUser.getPasswordHash()))
 			throw new RuntimeException(AppUtils.INVALID_CREDENTIALS);
-		return usersFound.get(0);
+		return existingUser;
 	}
 
 }
@@ -1,14 +1,24 @@
 package com.aspire.mini.utility;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import com.aspire.mini.enums.UserRole;
+
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 
 @Component
 public class AppUtils {
@@ -18,19 +28,60 @@ public class AppUtils {
 	public static final String INVALID_CREDENTIALS = "Invalid credentials";
 	public static final String USER_ALREADY_EXISTS = "User already exists";
 
+	private static final String DEFAULT_KEY_ID = "primary";
+	private static final int DEFAULT_TOKEN_CACHE_SIZE = 10000;
+	private static final long TOKEN_CACHE_SWEEP_INTERVAL_MILLIS = 1000;
+
 	private final int tokenExpiryHours;
 	private final String signingKey;
 	private final String tokenIssuer;
+	private final long tokenValidityMillis;
+
+	private final JwtKeyRing keyRing;
+	private final JwtParser jwtParser;
+
+	private final int tokenCacheSize;
+	private final ConcurrentMap<String, ValidatedToken> tokenCache = new ConcurrentHashMap<>();
+	private final LongAdder tokenCacheHits = new LongAdder();
+	private final LongAdder tokenCacheMisses = new LongAdder();
+	private volatile long nextTokenCacheSweep;
+
+	public AppUtils(int tokenExpiryHours, String signingKey, String tokenIssuer) {
+		this(tokenExpiryHours, signingKey, tokenIssuer, DEFAULT_KEY_ID, "", DEFAULT_TOKEN_CACHE_SIZE);
+	}
 
+	@Autowired
 	public AppUtils(@Value("${jwt.token.expiry.hours}") int tokenExpiryHours,
-			@Value("${jwt.token.signingkey}") String signingKey, @Value("${jwt.token.issuer}") String tokenIssuer) {
+			@Value("${jwt.token.signingkey}") String signingKey, @Value("${jwt.token.issuer}") String tokenIssuer,
+			@Value("${jwt.token.kid:" + DEFAULT_KEY_ID + "}") String signingKeyId,
+			@Value("${jwt.token.retired-signingkeys:}") String retiredSigningKeys,
+			@Value("${jwt.token.cache.size:" + DEFAULT_TOKEN_CACHE_SIZE + "}") int tokenCacheSize) {
 		this.tokenExpiryHours = tokenExpiryHours;
 		this.signingKey = signingKey;
 		this.tokenIssuer = tokenIssuer;
+		this.tokenValidityMillis = Duration.ofHours(tokenExpiryHours).toMillis();
+		this.tokenCacheSize = tokenCacheSize;
+		this.keyRing = new JwtKeyRing(signingKeyId, signingKey, retiredSigningKeys);
+		this.jwtParser = Jwts.parserBuilder().setSigningKeyResolver(this.keyRing).build();
 	}
 
 	/**
-	 * Validates a JSON Web Token (JWT) and returns its claims if valid.
+	 * Issues a signed JSON Web Token (JWT) for a user, signed with the active key
+	 * of the key ring.
+	 *
+	 * @param subject The email of the authenticated user.
+	 * @param role    The role of the authenticated user.
+	 * @return The compact, signed JWT.
+	 */
+	public String issueToken(String subject, UserRole role) {
+		return Jwts.builder().setHeaderParam("kid", this.keyRing.getActiveKeyId()).setIssuer(tokenIssuer)
+				.setSubject(subject).setExpiration(new Date(System.currentTimeMillis() + tokenValidityMillis))
+				.claim("role", role).signWith(this.keyRing.getActiveKey()).compact();
+	}
+
+	/**
+	 * Validates a JSON Web Token (JWT) and returns its claims if valid. Tokens that
+	 * validated before are served from a cache until their expiry time.
 	 *
 	 * @param token The JWT token to be validated.
 	 * @return A Jws<Claims> object containing JWT claims if the token is valid;
@@ -38,18 +89,51 @@ public class AppUtils {
 	 * @throws ExpiredJwtException If the token has expired.
 	 */
 	public Jws<Claims> validateJWTAndReturnClaims(String token) {
+		long now = System.currentTimeMillis();
+		ValidatedToken cached = token == null ? null : this.tokenCache.get(token);
+		if (cached != null) {
+			if (cached.expiresAt() > now) {
+				this.tokenCacheHits.increment();
+				return cached.claims();
+			}
+			this.tokenCache.remove(token, cached);
+		}
+		this.tokenCacheMisses.increment();
 		try {
-			Jws<Claims> claims = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(signingKey.getBytes())).build()
-					.parseClaimsJws(token);
+			Jws<Claims> claims = this.jwtParser.parseClaimsJws(token);
 			String issuer = String.valueOf(claims.getBody().get("iss"));
 			if (!StringUtils.pathEquals(issuer, tokenIssuer))
 				return null;
+			cacheToken(token, claims, now);
 			return claims;
 		} catch (ExpiredJwtException e) {
 			return null;
 		}
 	}
 
+	/**
+	 * Remember a validated token until its expiry. When the cache is full, expired
+	 * tokens are swept out first and an arbitrary entry is dropped if that does
+	 * not free any room.
+	 */
+	private void cacheToken(String token, Jws<Claims> claims, long now) {
+		Date expiration = claims.getBody().getExpiration();
+		if (expiration == null || this.tokenCacheSize <= 0)
+			return;
+		if (this.tokenCache.size() >= this.tokenCacheSize) {
+			if (now >= this.nextTokenCacheSweep) {
+				this.nextTokenCacheSweep = now + TOKEN_CACHE_SWEEP_INTERVAL_MILLIS;
+				this.tokenCache.values().removeIf(entry -> entry.expiresAt() <= now);
+			}
+			Iterator<String> tokens = this.tokenCache.keySet().iterator();
+			if (this.tokenCache.size() >= this.tokenCacheSize && tokens.hasNext()) {
+				tokens.next();
+				tokens.remove();
+			}
+		}
+		this.tokenCache.put(token, new ValidatedToken(claims, expiration.getTime()));
+	}
+
 	public int getTokenExpiryHours() {
 		return tokenExpiryHours;
 	}
@@ -62,4 +146,19 @@ public class AppUtils {
 		return tokenIssuer;
 	}
 
+	public long getTokenCacheHits() {
+		return tokenCacheHits.sum();
+	}
+
+	public long getTokenCacheMisses() {
+		return tokenCacheMisses.sum();
+	}
+
+	public int getTokenCacheEntries() {
+		return tokenCache.size();
+	}
+
+	private record ValidatedToken(Jws<Claims> claims, long expiresAt) {
+	}
+
 }
@@ -0,0 +1,148 @@
+package com.aspire.mini.utility;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the responses of requests sent with an Idempotency-Key header, so
+ * that a client retrying such a request gets the original response back
+ * instead of creating a second loan or payment.
+ * <p>
+ * Keys are scoped by the caller, usually the user and the operation, so
+ * different users may use the same key. A retry arriving while the original
+ * request is still running waits for its response. Server errors are
+ * remembered too, and an action that throws is remembered as one: the request
+ * may have changed loans before it failed, e.g. while waiting for the
+ * journal, so running it again could apply it twice. Entries expire after a fixed time; when the cache is full, expired entries
+ * are swept out first and an arbitrary completed entry is dropped if that
+ * does not free any room.
+ */
+@Component
+public class IdempotencyCache {
+
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+	public static final String KEY_REUSED = "Idempotency key was already used for a different request";
+
+	private static final int DEFAULT_SIZE = 100000;
+	private static final long DEFAULT_TTL_MINUTES = 1440;
+	private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+	private final int size;
+	private final long ttlMillis;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final LongAdder replays = new LongAdder();
+	private volatile long nextSweep;
+
+	public IdempotencyCache(@Value("${idempotency.cache.size:" + DEFAULT_SIZE + "}") int size,
+			@Value("${idempotency.ttl-minutes:" + DEFAULT_TTL_MINUTES + "}") long ttlMinutes) {
+		this.size = size;
+		this.ttlMillis = Duration.ofMinutes(ttlMinutes).toMillis();
+	}
+
+	/**
+	 * Runs a request once per idempotency key.
+	 *
+	 * @param scope   The scope of the key, e.g. the user's email and operation.
+	 * @param key     The client's idempotency key, or null to always run the
+	 *                action.
+	 * @param request The request, compared with the request first sent with the
+	 *                key.
+	 * @param action  Handles the request.
+	 * @return The response of the action, the stored response of the request
+	 *         first sent with the key, or an error response if the key was used
+	 *         for a different request.
+	 */
+	public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+		return executeAsync(scope, key, request, () -> CompletableFuture.completedFuture(action.get())).join();
+	}
+
+	/**
+	 * Runs a request once per idempotency key, without blocking a retry of a
+	 * request that is still running.
+	 *
+	 * @param scope   The scope of the key, e.g. the user's email and operation.
+	 * @param key     The client's idempotency key, or null to always run the
+	 *                action.
+	 * @param request The request, compared with the request first sent with the
+	 *                key.
+	 * @param action  Starts handling the request.
+	 * @return A future of the response of the action, of the stored response of
+	 *         the request first sent with the key, or of an error response if the
+	 *         key was used for a different request.
+	 */
+	public CompletableFuture<ResponseEntity<?>> executeAsync(String scope, String key, Object request,
+			Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+		if (key == null || this.size <= 0)
+			return action.get();
+		long now = System.currentTimeMillis();
+		String cacheKey = scope + '\n' + key;
+		Entry entry = new Entry(request, new CompletableFuture<>(), now + this.ttlMillis);
+		Entry existing = this.entries.putIfAbsent(cacheKey, entry);
+		while (existing != null && existing.expiresAt() <= now) {
+			this.entries.remove(cacheKey, existing);
+			existing = this.entries.putIfAbsent(cacheKey, entry);
+		}
+		if (existing != null) {
+			if (!existing.request().equals(request))
+				return CompletableFuture.completedFuture(
+						new ResponseEntity<String>(KEY_REUSED, HttpStatus.UNPROCESSABLE_ENTITY));
+			this.replays.increment();
+			return existing.response().thenApply(IdempotencyCache::replayed);
+		}
+		evictIfFull(cacheKey, now);
+		CompletableFuture<ResponseEntity<?>> response;
+		try {
+			response = action.get();
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+		response.<ResponseEntity<?>>handle(
+				(result, e) -> e == null ? result : ResponseEntity.internalServerError().build())
+				.thenAccept(entry.response()::complete);
+		return entry.response();
+	}
+
+	private void evictIfFull(String cacheKey, long now) {
+		if (this.entries.size() <= this.size)
+			return;
+		if (now >= this.nextSweep) {
+			this.nextSweep = now + SWEEP_INTERVAL_MILLIS;
+			this.entries.values().removeIf(entry -> entry.expiresAt() <= now);
+		}
+		Iterator<ConcurrentMap.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+		while (this.entries.size() > this.size && iterator.hasNext()) {
+			ConcurrentMap.Entry<String, Entry> candidate = iterator.next();
+			// requests still running stay, so that their retries keep waiting for them
+			if (!candidate.getKey().equals(cacheKey) && candidate.getValue().response().isDone())
+				iterator.remove();
+		}
+	}
+
+	private static ResponseEntity<?> replayed(ResponseEntity<?> response) {
+		return ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders())
+				.header(REPLAYED_HEADER, "true").body(response.getBody());
+	}
+
+	public long getReplays() {
+		return replays.sum();
+	}
+
+	public int getEntries() {
+		return entries.size();
+	}
+
+	private record Entry(Object request, CompletableFuture<ResponseEntity<?>> response, long expiresAt) {
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.aspire.mini.utility;
+
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+
+import org.springframework.util.StringUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+
+/**
+ * The set of HMAC keys the application signs and verifies tokens with. Keys are
+ * derived once at startup. New tokens are signed with the active key and carry
+ * its id in the {@code kid} header; tokens signed with a retired key keep
+ * validating until the key is removed from configuration.
+ */
+public class JwtKeyRing extends SigningKeyResolverAdapter {
+
+	private final String activeKeyId;
+
+	private final SecretKey activeKey;
+
+	private final Map<String, SecretKey> keys = new HashMap<>();
+
+	/**
+	 * @param activeKeyId      The id of the key used to sign new tokens.
+	 * @param activeSigningKey The secret of the key used to sign new tokens.
+	 * @param retiredKeys      Keys only used for verification, as a comma
+	 *                         separated list of {@code kid:secret} pairs. May be
+	 *                         empty.
+	 */
+	public JwtKeyRing(String activeKeyId, String activeSigningKey, String retiredKeys) {
+		this.activeKeyId = activeKeyId;
+		this.activeKey = Keys.hmacShaKeyFor(activeSigningKey.getBytes());
+		if (StringUtils.hasText(retiredKeys)) {
+			for (String retiredKey : retiredKeys.split(",")) {
+				String[] idAndSecret = retiredKey.trim().split(":", 2);
+				if (idAndSecret.length != 2)
+					throw new IllegalArgumentException("Invalid retired signing key: expected kid:secret");
+				this.keys.put(idAndSecret[0], Keys.hmacShaKeyFor(idAndSecret[1].getBytes()));
+			}
+		}
+		this.keys.put(activeKeyId, this.activeKey);
+	}
+
+	/**
+	 * Resolve the verification key from the token's {@code kid} header. Tokens
+	 * without one were issued before key ids were introduced and are checked
+	 * against the active key.
+	 */
+	// jjwt 0.11 declares this method with a raw JwsHeader, and JwsHeader<?> does not override it
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Key resolveSigningKey(JwsHeader header, Claims claims) {
+		String keyId = header.getKeyId();
+		if (keyId == null)
+			return this.activeKey;
+		SecretKey key = this.keys.get(keyId);
+		if (key == null)
+			throw new SignatureException("Unknown signing key id " + keyId);
+		return key;
+	}
+
+	public String getActiveKeyId() {
+		return activeKeyId;
+	}
+
+	public SecretKey getActiveKey() {
+		return activeKey;
+	}
+
+}
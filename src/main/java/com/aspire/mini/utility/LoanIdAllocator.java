@@ -0,0 +1,56 @@
+package com.aspire.mini.utility;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique loan IDs from a shared atomic sequence.
+ * <p>
+ * With a block size greater than one, each thread reserves a block of IDs at a
+ * time and serves further IDs from it without touching the shared counter. IDs
+ * stay unique, but are no longer issued in strict request order and may leave
+ * gaps when a thread's block is not used up.
+ */
+public class LoanIdAllocator {
+
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	private final int blockSize;
+
+	private final ThreadLocal<int[]> reservedBlock;
+
+	public LoanIdAllocator(int blockSize) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("Loan id block size must be a positive integer.");
+		this.blockSize = blockSize;
+		this.reservedBlock = blockSize == 1 ? null : ThreadLocal.withInitial(() -> new int[] { 0, 0 });
+	}
+
+	/**
+	 * Allocate the next loan ID.
+	 *
+	 * @return A positive loan ID that has not been issued before.
+	 */
+	public int nextId() {
+		if (this.reservedBlock == null)
+			return this.sequence.incrementAndGet();
+		// block[0] is the next ID to hand out, block[1] the end of the block
+		int[] block = this.reservedBlock.get();
+		if (block[0] == block[1]) {
+			int end = this.sequence.addAndGet(this.blockSize);
+			block[0] = end - this.blockSize + 1;
+			block[1] = end + 1;
+		}
+		return block[0]++;
+	}
+
+	/**
+	 * Make sure IDs up to and including the given one are never handed out, e.g.
+	 * after restoring loans that already use them.
+	 *
+	 * @param loanId The highest ID in use.
+	 */
+	public void advanceTo(int loanId) {
+		this.sequence.accumulateAndGet(loanId, Math::max);
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.aspire.mini.utility;
+
+import java.math.BigDecimal;
+
+/**
+ * Limits on how much a single user may borrow, checked when a loan is
+ * requested. Pending and approved loans both count towards them, paid loans do
+ * not. A limit of zero or less is not enforced.
+ */
+public class LoanLimits {
+
+	public static final LoanLimits NONE = new LoanLimits(BigDecimal.ZERO, 0);
+
+	private final long maxExposure;
+
+	private final int maxOpenLoans;
+
+	/**
+	 * @param maxExposure  The most a user may owe on open loans.
+	 * @param maxOpenLoans The most open loans a user may have.
+	 */
+	public LoanLimits(BigDecimal maxExposure, int maxOpenLoans) {
+		this.maxExposure = maxExposure.signum() > 0 ? Money.toMinorUnits(maxExposure) : Long.MAX_VALUE;
+		this.maxOpenLoans = maxOpenLoans > 0 ? maxOpenLoans : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @return The most a user may owe on open loans, in minor units.
+	 */
+	public long getMaxExposure() {
+		return maxExposure;
+	}
+
+	public int getMaxOpenLoans() {
+		return maxOpenLoans;
+	}
+
+}
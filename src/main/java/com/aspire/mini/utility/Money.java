@@ -0,0 +1,40 @@
+package com.aspire.mini.utility;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between decimal amounts and the minor units (cents) that loan
+ * and payment amounts are stored in. Amounts are only converted at the API
+ * boundary; all loan arithmetic is done on longs.
+ */
+public class Money {
+
+	public static final int SCALE = 2;
+
+	private Money() {
+	}
+
+	/**
+	 * Convert a decimal amount to minor units, rounding half up to the nearest
+	 * cent.
+	 *
+	 * @param amount The decimal amount, e.g. 1000.25.
+	 * @return The amount in minor units, e.g. 100025.
+	 * @throws ArithmeticException If the amount does not fit in a long.
+	 */
+	public static long toMinorUnits(BigDecimal amount) {
+		return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * Convert an amount in minor units to a decimal amount.
+	 *
+	 * @param minorUnits The amount in minor units, e.g. 100025.
+	 * @return The decimal amount, e.g. 1000.25.
+	 */
+	public static BigDecimal toDecimal(long minorUnits) {
+		return BigDecimal.valueOf(minorUnits, SCALE);
+	}
+
+}
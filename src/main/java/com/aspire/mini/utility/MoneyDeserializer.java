@@ -0,0 +1,23 @@
+package com.aspire.mini.utility;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Reads a decimal JSON amount, e.g. 1000.25 or "1000.25", into minor units.
+ */
+public class MoneyDeserializer extends JsonDeserializer<Long> {
+
+	@Override
+	public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+		if (parser.currentToken() == JsonToken.VALUE_STRING)
+			return Money.toMinorUnits(new BigDecimal(parser.getText().trim()));
+		return Money.toMinorUnits(parser.getDecimalValue());
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.aspire.mini.utility;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes an amount held in minor units as a decimal JSON number, e.g. 100025
+ * as 1000.25.
+ */
+public class MoneySerializer extends JsonSerializer<Long> {
+
+	@Override
+	public void serialize(Long minorUnits, JsonGenerator generator, SerializerProvider serializers)
+			throws IOException {
+		generator.writeNumber(Money.toDecimal(minorUnits));
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.aspire.mini.utility;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Salted PBKDF2 hashes of user passwords. Only the hash is kept in memory,
+ * journaled and snapshotted, so the plaintext password never leaves the
+ * request that carried it.
+ * <p>
+ * Every login recomputes the hash, so the iteration count is the cost of a
+ * login. It is set with password.hash.iterations and stored in each hash, so
+ * changing it only applies to passwords hashed afterwards; existing hashes
+ * keep verifying with the count they were made with.
+ */
+@Component
+public class PasswordHasher {
+
+	public static final int DEFAULT_ITERATIONS = 100_000;
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+	private static final String PREFIX = "pbkdf2-sha256";
+
+	private static final int SALT_BYTES = 16;
+
+	private static final int HASH_BITS = 256;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final int iterations;
+
+	public PasswordHasher(@Value("${password.hash.iterations:" + DEFAULT_ITERATIONS + "}") int iterations) {
+		if (iterations <= 0)
+			throw new IllegalArgumentException("password.hash.iterations must be positive");
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Hash a password with a new random salt.
+	 *
+	 * @param password The plaintext password.
+	 * @return The hash, as {@code pbkdf2-sha256$iterations$salt$hash} with the
+	 *         salt and hash Base64 encoded.
+	 */
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.nextBytes(salt);
+		Base64.Encoder encoder = Base64.getEncoder();
+		return PREFIX + "$" + this.iterations + "$" + encoder.encodeToString(salt) + "$"
+				+ encoder.encodeToString(pbkdf2(password, salt, this.iterations));
+	}
+
+	/**
+	 * Check a password against a hash, in time independent of where they differ.
+	 *
+	 * @param password The plaintext password.
+	 * @param hash     A hash returned by {@link #hash(String)}, with any
+	 *                 iteration count.
+	 * @return true if the password matches the hash.
+	 */
+	public boolean matches(String password, String hash) {
+		String[] parts = hash.split("\\$");
+		if (parts.length != 4 || !parts[0].equals(PREFIX))
+			return false;
+		Base64.Decoder decoder = Base64.getDecoder();
+		byte[] expected = decoder.decode(parts[3]);
+		byte[] actual = pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+		return MessageDigest.isEqual(expected, actual);
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.aspire.mini.utility;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed set of locks shared out by key. Work on the same key is serialized
+ * while work on different keys usually lands on different stripes and runs in
+ * parallel.
+ */
+public class StripedLock {
+
+	private final ReentrantLock[] stripes;
+
+	private final int mask;
+
+	public StripedLock(int stripes) {
+		if (stripes <= 0)
+			throw new IllegalArgumentException("Lock stripes must be a positive integer.");
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes)
+			size <<= 1;
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Run an action while holding the stripe guarding the given key.
+	 *
+	 * @param key    The key to lock on.
+	 * @param action The action to run.
+	 * @return The value returned by the action.
+	 */
+	public <T> T withLock(int key, Supplier<T> action) {
+		ReentrantLock lock = lockFor(key);
+		lock.lock();
+		try {
+			return action.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ReentrantLock lockFor(int key) {
+		int hash = key ^ (key >>> 16);
+		return this.stripes[hash & this.mask];
+	}
+
+}
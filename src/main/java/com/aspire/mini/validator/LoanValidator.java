@@ -1,10 +1,19 @@
 package com.aspire.mini.validator;
 
+import java.util.List;
+
+import com.aspire.mini.dto.request.ApprovalRequestDTO;
+import com.aspire.mini.dto.request.LoanQueryDTO;
 import com.aspire.mini.dto.request.LoanRequestDTO;
 import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.request.RepaymentRequestDTO;
 
 public class LoanValidator {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
     public static void validateLoanId(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Invalid Loan Id: Loan Id must be a positive integer.");
@@ -13,7 +22,7 @@ public class LoanValidator {
 
     public static void validateLoanRequest(LoanRequestDTO loanRequestDTO) {
         if (loanRequestDTO == null
-                || loanRequestDTO.getLoanAmount() <= 0.0
+                || loanRequestDTO.getLoanAmount() <= 0
                 || loanRequestDTO.getLoanTerm() <= 0) {
             throw new IllegalArgumentException("Invalid Loan Request: Loan amount and term must be positive values.");
         }
@@ -23,8 +32,31 @@ public class LoanValidator {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Invalid Loan Id: Loan Id must be a positive integer.");
         }
-        if (paymentRequestDTO == null || paymentRequestDTO.getAmount() < 0.0) {
+        if (paymentRequestDTO == null || paymentRequestDTO.getAmount() < 0) {
             throw new IllegalArgumentException("Invalid Payment Request: Payment amount must be a non-negative value.");
         }
     }
+
+    public static void validateLoanQuery(LoanQueryDTO loanQueryDTO) {
+        if (loanQueryDTO.getCursor() != null && loanQueryDTO.getCursor() < 0) {
+            throw new IllegalArgumentException("Invalid Loan Query: Cursor must be a non-negative integer.");
+        }
+        if (loanQueryDTO.getLimit() != null && (loanQueryDTO.getLimit() <= 0 || loanQueryDTO.getLimit() > MAX_PAGE_SIZE)) {
+            throw new IllegalArgumentException("Invalid Loan Query: Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+    }
+
+    public static void validateApprovalRequest(ApprovalRequestDTO approvalRequestDTO) {
+        if (approvalRequestDTO == null
+                || (approvalRequestDTO.getLoanIds() == null && approvalRequestDTO.getMaxLoanAmount() == null
+                        && approvalRequestDTO.getStartDateFrom() == null && approvalRequestDTO.getStartDateTo() == null)) {
+            throw new IllegalArgumentException("Invalid Approval Request: Loan ids or at least one filter is required.");
+        }
+    }
+
+    public static void validateRepaymentBatch(List<RepaymentRequestDTO> repayments) {
+        if (repayments == null || repayments.isEmpty()) {
+            throw new IllegalArgumentException("Invalid Repayment Batch: At least one repayment is required.");
+        }
+    }
 }
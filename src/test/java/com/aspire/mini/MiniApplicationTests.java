@@ -3,7 +3,7 @@ package com.aspire.mini;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = { "journal.enabled=false", "snapshot.enabled=false" })
 class MiniApplicationTests {
 
 	@Test
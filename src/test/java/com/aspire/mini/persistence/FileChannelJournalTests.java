@@ -0,0 +1,162 @@
+package com.aspire.mini.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.persistence.impl.FileChannelJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
+import com.aspire.mini.service.LoanService;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.PasswordHasher;
+import com.aspire.mini.utility.StripedLock;
+
+public class FileChannelJournalTests {
+
+    private static final String EMAIL = "sample@example.com";
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void givenAppendedEventsReplayThemInOrder() throws Exception {
+        Path path = directory.resolve("journal");
+        List<JournalEvent> events = List.of(
+                new JournalEvent.UserCreated(EMAIL, new PasswordHasher(1000).hash("pa$$word"), false),
+                new JournalEvent.LoanCreated(1, EMAIL, 100000L, START_DATE, 4, 7),
+                new JournalEvent.LoanApproved(1),
+                new JournalEvent.LoanRepaid(1, 0, 40000L, START_DATE.plusDays(3)));
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            long sequence = 0;
+            for (JournalEvent event : events) {
+                sequence = journal.append(event);
+            }
+            journal.awaitDurable(sequence);
+        }
+
+        assertThat(replay(path)).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    public void givenDurabilityFuturesCompleteThemOnceEventsAreOnDisk() throws Exception {
+        Path path = directory.resolve("journal");
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 1; i <= 100; i++) {
+                futures.add(journal.whenDurable(journal.append(new JournalEvent.LoanApproved(i))));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            // what a crash at this point would leave behind
+            assertThat(replay(Files.copy(path, directory.resolve("copy")))).hasSize(100);
+            assertThat(journal.whenDurable(1)).isCompleted();
+        }
+    }
+
+    @Test
+    public void givenTornRecordAtTailReplayUpToItAndKeepAppending() throws Exception {
+        Path path = directory.resolve("journal");
+        try (Journal journal = new FileChannelJournal(path, false)) {
+            journal.awaitDurable(journal.append(new JournalEvent.LoanApproved(1)));
+        }
+        long validLength = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            // header of a record whose payload never made it to disk
+            channel.write(ByteBuffer.allocate(8).putInt(21).putInt(42).flip());
+        }
+
+        try (Journal journal = new FileChannelJournal(path, false)) {
+            List<JournalEvent> replayed = new ArrayList<>();
+            journal.replay(replayed::add);
+            assertThat(replayed).containsExactly(new JournalEvent.LoanApproved(1));
+            assertThat(Files.size(path)).isEqualTo(validLength);
+            journal.awaitDurable(journal.append(new JournalEvent.LoanApproved(2)));
+        }
+
+        assertThat(replay(path)).containsExactly(new JournalEvent.LoanApproved(1), new JournalEvent.LoanApproved(2));
+    }
+
+    @Test
+    public void givenJournaledLoansRecoverThemAfterRestart() throws Exception {
+        Path path = directory.resolve("journal");
+        LoanResponseDTO loan;
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            LoanService loanService = new LoanServiceImpl(new InMemoryLoanRepository(), new LoanIdAllocator(1),
+                    new StripedLock(64), journal, LoanLimits.NONE, Runnable::run);
+            loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+            loanService.approveLoan(loan.getLoanId());
+            loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE.plusDays(3), 40000L));
+            loan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE.plusDays(10), 20000L));
+        }
+
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            LoanRepository loanRepository = new InMemoryLoanRepository();
+            LoanIdAllocator loanIdAllocator = new LoanIdAllocator(1);
+            StripedLock loanLocks = new StripedLock(64);
+            LoanServiceImpl loanService = new LoanServiceImpl(loanRepository, loanIdAllocator, loanLocks, journal,
+                    LoanLimits.NONE, Runnable::run);
+            Snapshotter noSnapshots = new Snapshotter(loanRepository, new InMemoryUserRepository(), loanLocks,
+                    loanIdAllocator, journal, false, directory.resolve("snapshot").toString());
+            new JournalRecovery(noSnapshots, journal, List.of(loanService)).recover();
+
+            assertThat(loanService.getLoanByIdAndEmail(loan.getLoanId(), EMAIL)).isEqualTo(loan);
+            assertThat(loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId())
+                    .isGreaterThan(loan.getLoanId());
+        }
+    }
+
+    @Test
+    public void givenEventsForUnknownLoansSkipThemDuringRecovery() throws Exception {
+        Path path = directory.resolve("journal");
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            journal.append(new JournalEvent.LoanApproved(7));
+            journal.append(new JournalEvent.LoanRepaid(7, 0, 40000L, START_DATE.plusDays(3)));
+            journal.append(new JournalEvent.LoanCreated(1, EMAIL, 100000L, START_DATE, 4, 7));
+            journal.awaitDurable(journal.append(new JournalEvent.LoanApproved(1)));
+        }
+
+        try (Journal journal = new FileChannelJournal(path, true)) {
+            LoanRepository loanRepository = new InMemoryLoanRepository();
+            LoanIdAllocator loanIdAllocator = new LoanIdAllocator(1);
+            StripedLock loanLocks = new StripedLock(64);
+            LoanServiceImpl loanService = new LoanServiceImpl(loanRepository, loanIdAllocator, loanLocks, journal,
+                    LoanLimits.NONE, Runnable::run);
+            Snapshotter noSnapshots = new Snapshotter(loanRepository, new InMemoryUserRepository(), loanLocks,
+                    loanIdAllocator, journal, false, directory.resolve("snapshot").toString());
+            new JournalRecovery(noSnapshots, journal, List.of(loanService)).recover();
+
+            assertThat(loanRepository.findById(7)).isNull();
+            assertThat(loanService.getLoanByIdAndEmail(1, EMAIL).getLoanStatus()).isEqualTo(LoanStatus.APPROVED);
+        }
+    }
+
+    private static List<JournalEvent> replay(Path path) {
+        List<JournalEvent> replayed = new ArrayList<>();
+        try (Journal journal = new FileChannelJournal(path, false)) {
+            journal.replay(replayed::add);
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,132 @@
+package com.aspire.mini.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.model.Loan;
+import com.aspire.mini.model.Payment;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.service.LoanService;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.StripedLock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+public class LoanCodecTests {
+
+    private static final String EMAIL = "sample@example.com";
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+
+    private LoanRepository loanRepository;
+
+    private LoanService loanService;
+
+    @BeforeEach
+    public void setUp() {
+        loanRepository = new InMemoryLoanRepository();
+        loanService = new LoanServiceImpl(loanRepository, new LoanIdAllocator(1), new StripedLock(64),
+                new NoOpJournal(), LoanLimits.NONE, Runnable::run);
+    }
+
+    @Test
+    public void givenPendingLoanDecodeEqualLoan() throws Exception {
+        Loan loan = requestLoan(100000L, 3);
+
+        assertThat(roundTrip(loan, ByteBuffer.allocate(LoanCodec.maxEncodedSize(loan)))).usingRecursiveComparison()
+                .isEqualTo(loan);
+    }
+
+    @Test
+    public void givenReamortizedAndClosedLoansDecodeEqualLoans() throws Exception {
+        Loan reamortized = requestLoan(5200000L, 520);
+        loanService.approveLoan(reamortized.getLoanId());
+        for (int i = 1; i <= 20; i++) {
+            loanService.repayLoan(reamortized.getLoanId(), EMAIL,
+                    new PaymentRequestDTO(START_DATE.plusDays(i * 5L), 10000L + i * 137));
+        }
+        Loan closed = requestLoan(100000L, 4);
+        loanService.approveLoan(closed.getLoanId());
+        loanService.repayLoan(closed.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE, 40000L));
+        loanService.repayLoan(closed.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE, 90000L));
+
+        assertThat(reamortized.getPaymentSchedule().getSegments()).hasSize(21);
+        assertThat(closed.getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(closed.getRemainingBalance()).isNegative();
+        // decoding reads straight from direct buffers such as mapped files too
+        assertThat(roundTrip(reamortized, ByteBuffer.allocateDirect(LoanCodec.maxEncodedSize(reamortized))))
+                .usingRecursiveComparison().isEqualTo(reamortized);
+        assertThat(roundTrip(closed, ByteBuffer.allocate(LoanCodec.maxEncodedSize(closed))))
+                .usingRecursiveComparison().isEqualTo(closed);
+    }
+
+    @Test
+    public void givenPaymentsDecodeEqualPaymentsInAFractionOfTheJsonSize() throws Exception {
+        Loan loan = requestLoan(5200000L, 520);
+        loanService.approveLoan(loan.getLoanId());
+        loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE.plusDays(3), 12345L));
+        List<Payment> payments = loan.getPayments();
+
+        ByteBuffer buffer = ByteBuffer.allocate(LoanCodec.maxEncodedSize(payments));
+        LoanCodec.encodePayments(payments, buffer);
+        buffer.flip();
+        int encodedSize = buffer.remaining();
+
+        assertThat(LoanCodec.decodePayments(buffer)).isEqualTo(payments);
+        assertThat(buffer.hasRemaining()).isFalse();
+        byte[] json = new ObjectMapper().registerModule(new JavaTimeModule()).writeValueAsBytes(payments);
+        assertThat(encodedSize).isLessThan(json.length / 10);
+    }
+
+    @Test
+    public void givenExtremeValuesDecodeThemUnchanged() throws Exception {
+        int[] ints = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        long[] longs = { 0, 127, 128, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int value : ints) {
+            LoanCodec.putVarInt(buffer, value);
+        }
+        for (long value : longs) {
+            LoanCodec.putVarLong(buffer, value);
+        }
+        LoanCodec.putDate(buffer, LocalDate.MIN);
+        LoanCodec.putDate(buffer, LocalDate.MAX);
+        buffer.flip();
+
+        for (int value : ints) {
+            assertThat(LoanCodec.getVarInt(buffer)).isEqualTo(value);
+        }
+        for (long value : longs) {
+            assertThat(LoanCodec.getVarLong(buffer)).isEqualTo(value);
+        }
+        assertThat(LoanCodec.getDate(buffer)).isEqualTo(LocalDate.MIN);
+        assertThat(LoanCodec.getDate(buffer)).isEqualTo(LocalDate.MAX);
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    private Loan requestLoan(long loanAmount, int loanTerm) {
+        int loanId = loanService.requestLoan(EMAIL, new LoanRequestDTO(loanAmount, START_DATE, loanTerm)).getLoanId();
+        return loanRepository.findById(loanId);
+    }
+
+    private static Loan roundTrip(Loan loan, ByteBuffer buffer) {
+        LoanCodec.encode(loan, buffer);
+        buffer.flip();
+        Loan decoded = LoanCodec.decode(buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        return decoded;
+    }
+}
@@ -0,0 +1,149 @@
+package com.aspire.mini.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.persistence.impl.FileChannelJournal;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.LoanRepository;
+import com.aspire.mini.repository.UserRepository;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.service.impl.UserServiceImpl;
+import com.aspire.mini.utility.AppUtils;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.PasswordHasher;
+import com.aspire.mini.utility.StripedLock;
+
+public class SnapshotterTests {
+
+    private static final String EMAIL = "sample@example.com";
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void givenSnapshotFollowedByRepaymentsRecoverBoth() throws Exception {
+        List<LoanResponseDTO> loans;
+        try (Instance instance = new Instance(directory)) {
+            instance.userService.createUser(EMAIL, "pa$$word", false);
+            List<Integer> loanIds = requestAndApproveLoans(instance.loanService, 3);
+            instance.loanService.repayLoan(loanIds.get(0), EMAIL, new PaymentRequestDTO(START_DATE, 40000L));
+            assertThat(contents(directory.resolve("journal"))).contains(EMAIL).doesNotContain("pa$$word");
+            instance.snapshotter.snapshot();
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(file -> file.getFileName().toString()))
+                        .containsExactlyInAnyOrder("journal", "snapshot");
+            }
+            assertThat(contents(directory.resolve("snapshot"))).contains(EMAIL).doesNotContain("pa$$word");
+
+            instance.loanService.repayLoan(loanIds.get(0), EMAIL, new PaymentRequestDTO(START_DATE, 20000L));
+            instance.loanService.repayLoan(loanIds.get(1), EMAIL, new PaymentRequestDTO(START_DATE, 100000L));
+            loans = instance.loanService.getAllLoansByEmail(EMAIL);
+        }
+
+        try (Instance instance = new Instance(directory)) {
+            instance.recovery.recover();
+
+            assertThat(instance.loanService.getAllLoansByEmail(EMAIL)).isEqualTo(loans);
+            assertThat(instance.userService.authenticateUser(EMAIL, "pa$$word"))
+                    .isNotIn(AppUtils.USER_DOES_NOT_EXIST, AppUtils.INVALID_CREDENTIALS);
+        }
+    }
+
+    @Test
+    public void givenJournalEventsAlreadyInSnapshotApplyThemOnce() throws Exception {
+        List<LoanResponseDTO> loans;
+        try (Instance instance = new Instance(directory)) {
+            List<Integer> loanIds = requestAndApproveLoans(instance.loanService, 2);
+            instance.loanService.repayLoan(loanIds.get(0), EMAIL, new PaymentRequestDTO(START_DATE, 40000L));
+            instance.loanService.repayLoan(loanIds.get(1), EMAIL, new PaymentRequestDTO(START_DATE, 25000L));
+            // a snapshot that leaves the journal alone, as if every event had
+            // been appended after the rotation
+            new Snapshotter(instance.loanRepository, instance.userRepository, instance.loanLocks,
+                    instance.loanIdAllocator, new NoOpJournal(), true, directory.resolve("snapshot").toString())
+                    .snapshot();
+            loans = instance.loanService.getAllLoansByEmail(EMAIL);
+        }
+
+        try (Instance instance = new Instance(directory)) {
+            instance.recovery.recover();
+
+            assertThat(instance.loanService.getAllLoansByEmail(EMAIL)).isEqualTo(loans);
+        }
+    }
+
+    private static String contents(Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+    }
+
+    private static List<Integer> requestAndApproveLoans(LoanServiceImpl loanService, int count) {
+        List<Integer> loanIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+            loanService.approveLoan(loan.getLoanId());
+            loanIds.add(loan.getLoanId());
+        }
+        return loanIds;
+    }
+
+    /**
+     * The persistent part of the application wired the way the Spring context
+     * wires it, reading and writing the files in one directory.
+     */
+    private static final class Instance implements AutoCloseable {
+
+        final LoanRepository loanRepository = new InMemoryLoanRepository();
+
+        final UserRepository userRepository = new InMemoryUserRepository();
+
+        final LoanIdAllocator loanIdAllocator = new LoanIdAllocator(1);
+
+        final StripedLock loanLocks = new StripedLock(64);
+
+        final Journal journal;
+
+        final LoanServiceImpl loanService;
+
+        final UserServiceImpl userService;
+
+        final Snapshotter snapshotter;
+
+        final JournalRecovery recovery;
+
+        Instance(Path directory) {
+            journal = new FileChannelJournal(directory.resolve("journal"), false);
+            loanService = new LoanServiceImpl(loanRepository, loanIdAllocator, loanLocks, journal,
+                    LoanLimits.NONE, Runnable::run);
+            userService = new UserServiceImpl(userRepository,
+                    new AppUtils(1, "fhbfjsbfjjhewjfbefbjhwehjfrebfjfhbjherbhjerbwhjfbhjrefb", "http://mini-aspire.com"),
+                    journal, new PasswordHasher(1000));
+            snapshotter = new Snapshotter(loanRepository, userRepository, loanLocks, loanIdAllocator, journal,
+                    true, directory.resolve("snapshot").toString());
+            recovery = new JournalRecovery(snapshotter, journal, List.of(loanService, userService));
+        }
+
+        @Override
+        public void close() {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.aspire.mini.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aspire.mini.dto.request.ApprovalRequestDTO;
+import com.aspire.mini.dto.request.LoanQueryDTO;
+import com.aspire.mini.dto.request.LoanRequestDTO;
+import com.aspire.mini.dto.request.PaymentRequestDTO;
+import com.aspire.mini.dto.request.RepaymentRequestDTO;
+import com.aspire.mini.dto.response.ApprovalResponseDTO;
+import com.aspire.mini.dto.response.LoanPageDTO;
+import com.aspire.mini.dto.response.LoanResponseDTO;
+import com.aspire.mini.dto.response.PortfolioResponseDTO;
+import com.aspire.mini.dto.response.RepaymentResponseDTO;
+import com.aspire.mini.enums.LoanStatus;
+import com.aspire.mini.enums.PaymentStatus;
+import com.aspire.mini.enums.RepaymentResult;
+import com.aspire.mini.exception.LoanLimitExceededException;
+import com.aspire.mini.model.Payment;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.impl.InMemoryLoanRepository;
+import com.aspire.mini.service.impl.LoanServiceImpl;
+import com.aspire.mini.utility.LoanIdAllocator;
+import com.aspire.mini.utility.LoanLimits;
+import com.aspire.mini.utility.StripedLock;
+import com.aspire.mini.validator.LoanValidator;
+
+public class LoanServiceImplTests {
+
+    private static final String EMAIL = "sample@example.com";
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 9, 1);
+
+    private static final int THREADS = 8;
+
+    private LoanService loanService;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        loanService = new LoanServiceImpl(new InMemoryLoanRepository(), new LoanIdAllocator(1), new StripedLock(64),
+                new NoOpJournal(), LoanLimits.NONE, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenUnevenLoanAmountSchedulePaymentsSummingToLoanAmount() throws Exception {
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(10000L, START_DATE, 3));
+
+        assertThat(loan.getPayments()).extracting(Payment::getAmount).containsExactly(3334L, 3333L, 3333L);
+        assertThat(loan.getPayments()).extracting(Payment::getPaymentDate)
+                .containsExactly(START_DATE.plusDays(7), START_DATE.plusDays(14), START_DATE.plusDays(21));
+    }
+
+    @Test
+    public void givenPaymentDifferentFromInstallmentReamortizeRemainingPayments() throws Exception {
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+        loanService.approveLoan(loan.getLoanId());
+        LocalDate paymentDate = START_DATE.plusDays(3);
+
+        LoanResponseDTO repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL,
+                new PaymentRequestDTO(paymentDate, 40000L));
+
+        assertThat(repaidLoan.getRemainingBalance()).isEqualTo(60000L);
+        assertThat(repaidLoan.getPayments()).containsExactly(
+                new Payment(START_DATE.plusDays(7), PaymentStatus.PAID, 40000L),
+                new Payment(paymentDate.plusDays(7), PaymentStatus.PENDING, 20000L),
+                new Payment(paymentDate.plusDays(14), PaymentStatus.PENDING, 20000L),
+                new Payment(paymentDate.plusDays(21), PaymentStatus.PENDING, 20000L));
+
+        repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 20000L));
+        repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 50000L));
+
+        assertThat(repaidLoan.getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(repaidLoan.getPayments()).extracting(Payment::getAmount).containsExactly(40000L, 20000L, 50000L);
+        assertThat(repaidLoan.getPayments()).allMatch(payment -> payment.getPaymentStatus().equals(PaymentStatus.PAID));
+    }
+
+    @Test
+    public void givenUnderpaidFinalInstallmentScheduleShortfallAsNewInstallment() throws Exception {
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(20000L, START_DATE, 2));
+        loanService.approveLoan(loan.getLoanId());
+        loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(START_DATE.plusDays(7), 10000L));
+        LocalDate paymentDate = START_DATE.plusDays(14);
+
+        LoanResponseDTO repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL,
+                new PaymentRequestDTO(paymentDate, 6000L));
+
+        assertThat(repaidLoan.getLoanStatus()).isEqualTo(LoanStatus.APPROVED);
+        assertThat(repaidLoan.getRemainingBalance()).isEqualTo(4000L);
+        assertThat(repaidLoan.getPayments()).containsExactly(
+                new Payment(START_DATE.plusDays(7), PaymentStatus.PAID, 10000L),
+                new Payment(START_DATE.plusDays(14), PaymentStatus.PAID, 6000L),
+                new Payment(paymentDate.plusDays(7), PaymentStatus.PENDING, 4000L));
+
+        // the shortfall can go overdue and be paid in parts like any installment
+        assertThat(loanService.getOverdueLoans(paymentDate.plusDays(8), false))
+                .extracting(LoanResponseDTO::getLoanId).containsExactly(loan.getLoanId());
+        repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 1000L));
+        assertThat(repaidLoan).isNotNull();
+        repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 3000L));
+
+        assertThat(repaidLoan.getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(repaidLoan.getPayments()).extracting(Payment::getAmount)
+                .containsExactly(10000L, 6000L, 1000L, 3000L);
+    }
+
+    @Test
+    public void givenLongChainOfPartialPaymentsKeepRemainingScheduleConsistent() throws Exception {
+        int loanTerm = 520;
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(loanTerm * 100000L, START_DATE,
+                loanTerm));
+        loanService.approveLoan(loan.getLoanId());
+        Random random = new Random(42);
+
+        for (int i = 0; i < loanTerm - 1; i++) {
+            LocalDate paymentDate = START_DATE.plusDays(7L * i + random.nextInt(7));
+            long amount = i % 5 == 0 ? loan.getNextInstallmentAmount() : 1 + random.nextInt(150000);
+            boolean reamortized = amount != loan.getNextInstallmentAmount();
+
+            loan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, amount));
+
+            List<Payment> pending = loan.getPayments().subList(i + 1, loanTerm);
+            assertThat(loan.getPayments()).hasSize(loanTerm);
+            assertThat(loan.getPayments().get(i)).isEqualTo(
+                    new Payment(loan.getPayments().get(i).getPaymentDate(), PaymentStatus.PAID, amount));
+            assertThat(pending).allMatch(payment -> payment.getPaymentStatus().equals(PaymentStatus.PENDING));
+            assertThat(pending.stream().mapToLong(Payment::getAmount).sum()).isEqualTo(loan.getRemainingBalance());
+            long lastAmount = pending.get(pending.size() - 1).getAmount();
+            assertThat(pending.subList(1, pending.size())).allMatch(payment -> payment.getAmount() == lastAmount);
+            for (int p = 1; p < pending.size(); p++) {
+                assertThat(pending.get(p).getPaymentDate()).isEqualTo(pending.get(p - 1).getPaymentDate().plusDays(7));
+            }
+            if (reamortized) {
+                assertThat(pending.get(0).getPaymentDate()).isEqualTo(paymentDate.plusDays(7));
+            }
+            assertThat(loan.getNextInstallmentAmount()).isEqualTo(pending.get(0).getAmount());
+            assertThat(loan.getNextDueDate()).isEqualTo(pending.get(0).getPaymentDate());
+        }
+
+        loan = loanService.repayLoan(loan.getLoanId(), EMAIL,
+                new PaymentRequestDTO(START_DATE.plusDays(7L * loanTerm), loan.getRemainingBalance()));
+
+        assertThat(loan.getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(loan.getPayments()).hasSize(loanTerm);
+        assertThat(loan.getPayments().stream().mapToLong(Payment::getAmount).sum()).isEqualTo(loanTerm * 100000L);
+    }
+
+    @Test
+    public void givenMissedInstallmentsFindAndSweepOverdueLoansByDueDate() throws Exception {
+        int late = loanService.requestLoan(EMAIL, new LoanRequestDTO(40000L, START_DATE, 4)).getLoanId();
+        int onTime = loanService.requestLoan(EMAIL, new LoanRequestDTO(20000L, START_DATE, 2)).getLoanId();
+        int paid = loanService.requestLoan(EMAIL, new LoanRequestDTO(10000L, START_DATE, 1)).getLoanId();
+        loanService.requestLoan(EMAIL, new LoanRequestDTO(10000L, START_DATE, 1));
+        for (int id : List.of(late, onTime, paid)) {
+            loanService.approveLoan(id);
+        }
+        loanService.repayLoan(onTime, EMAIL, new PaymentRequestDTO(START_DATE.plusDays(7), 10000L));
+        loanService.repayLoan(paid, EMAIL, new PaymentRequestDTO(START_DATE.plusDays(7), 10000L));
+
+        assertThat(loanService.getOverdueLoans(START_DATE.plusDays(8), false))
+                .extracting(LoanResponseDTO::getLoanId).containsExactly(late);
+        assertThat(loanService.getOverdueLoans(START_DATE.plusDays(15), false))
+                .extracting(LoanResponseDTO::getLoanId).containsExactly(late, onTime);
+        assertThat(loanService.getOverdueLoans(START_DATE.plusDays(15), false))
+                .allMatch(loan -> loan.getPayments() == null);
+
+        assertThat(loanService.sweepOverdueLoans(START_DATE.plusDays(8))).isEqualTo(1);
+        assertThat(loanService.sweepOverdueLoans(START_DATE.plusDays(8))).isZero();
+        // the late loan's second missed installment is found too, not just its first
+        assertThat(loanService.sweepOverdueLoans(START_DATE.plusDays(15))).isEqualTo(2);
+
+        LoanResponseDTO lateLoan = loanService.getLoanByIdAndEmail(late, EMAIL);
+        assertThat(lateLoan.getOverdueInstallments()).isEqualTo(2);
+        assertThat(lateLoan.getPayments()).extracting(Payment::getPaymentStatus).containsExactly(
+                PaymentStatus.OVERDUE, PaymentStatus.OVERDUE, PaymentStatus.PENDING, PaymentStatus.PENDING);
+        assertThat(loanService.getLoanByIdAndEmail(onTime, EMAIL).getOverdueInstallments()).isEqualTo(1);
+
+        // a late partial payment re-amortizes the loan from the payment date
+        loanService.repayLoan(late, EMAIL, new PaymentRequestDTO(START_DATE.plusDays(15), 5000L));
+        // a backdated underpayment of the last installment adds one due before the last sweep
+        loanService.repayLoan(onTime, EMAIL, new PaymentRequestDTO(START_DATE, 4000L));
+
+        assertThat(loanService.getLoanByIdAndEmail(late, EMAIL).getOverdueInstallments()).isZero();
+        assertThat(loanService.getLoanByIdAndEmail(onTime, EMAIL).getOverdueInstallments()).isZero();
+        assertThat(loanService.sweepOverdueLoans(START_DATE.plusDays(16))).isEqualTo(1);
+        assertThat(loanService.getLoanByIdAndEmail(onTime, EMAIL).getPayments())
+                .extracting(Payment::getPaymentStatus)
+                .containsExactly(PaymentStatus.PAID, PaymentStatus.PAID, PaymentStatus.OVERDUE);
+
+        assertThat(loanService.getOverdueLoans(START_DATE.plusDays(16), true))
+                .extracting(LoanResponseDTO::getLoanId).containsExactly(onTime);
+        assertThat(loanService.getOverdueLoans(START_DATE.plusDays(23), true))
+                .extracting(LoanResponseDTO::getLoanId).containsExactly(onTime, late);
+    }
+
+    @Test
+    public void givenConcurrentLoanChangesKeepPortfolioTotalsInSync() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < 20; i++) {
+                    int loanId = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 10))
+                            .getLoanId();
+                    if (i % 4 == 0) {
+                        continue;
+                    }
+                    loanService.approveLoan(loanId);
+                    long amount = i % 4 == 1 ? 10000L : i % 4 == 2 ? 7000L + thread : 150000L;
+                    loanService.repayLoan(loanId, EMAIL, new PaymentRequestDTO(START_DATE, amount));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+            result.get();
+        }
+
+        List<LoanResponseDTO> loans = new ArrayList<>();
+        loanService.exportLoans(null, false, loans::add);
+        List<LoanResponseDTO> approved = loans.stream()
+                .filter(loan -> loan.getLoanStatus().equals(LoanStatus.APPROVED)).toList();
+        PortfolioResponseDTO portfolio = loanService.getPortfolio();
+
+        assertThat(portfolio.getLoanCounts()).containsEntry(LoanStatus.PENDING, (long) THREADS * 5)
+                .containsEntry(LoanStatus.APPROVED, (long) THREADS * 10)
+                .containsEntry(LoanStatus.PAID, (long) THREADS * 5);
+        assertThat(portfolio.getOutstandingBalance())
+                .isEqualTo(approved.stream().mapToLong(LoanResponseDTO::getRemainingBalance).sum());
+        assertThat(portfolio.getPendingInstallments())
+                .isEqualTo(approved.stream().mapToLong(loan -> loan.getLoanTerm() - loan.getPaidInstallments()).sum());
+    }
+
+    @Test
+    public void givenConcurrentRequestsOfSameUserNeverExceedLoanLimits() throws Exception {
+        loanService = new LoanServiceImpl(new InMemoryLoanRepository(), new LoanIdAllocator(1), new StripedLock(64),
+                new NoOpJournal(), new LoanLimits(new BigDecimal("1000.00"), 3), executor);
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                int created = 0;
+                for (int i = 0; i < 10; i++) {
+                    try {
+                        loanService.requestLoan(EMAIL, new LoanRequestDTO(30000L, START_DATE, 2));
+                        created++;
+                    } catch (LoanLimitExceededException e) {
+                        // expected once the limits are reached
+                    }
+                }
+                return created;
+            });
+        }
+        int created = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+            created += result.get();
+        }
+
+        assertThat(created).isEqualTo(3);
+        assertThat(loanService.getAllLoansByEmail(EMAIL)).hasSize(3);
+        LoanResponseDTO other = loanService.requestLoan("other@example.com", new LoanRequestDTO(100000L, START_DATE, 2));
+        assertThat(other).isNotNull();
+        assertThatThrownBy(() -> loanService.requestLoan("other@example.com", new LoanRequestDTO(1L, START_DATE, 1)))
+                .isInstanceOf(LoanLimitExceededException.class);
+
+        // paying a loan off frees its share of the limits
+        int loanId = loanService.getAllLoansByEmail(EMAIL).get(0).getLoanId();
+        loanService.approveLoan(loanId);
+        loanService.repayLoan(loanId, EMAIL, new PaymentRequestDTO(START_DATE, 15000L));
+        assertThatThrownBy(() -> loanService.requestLoan(EMAIL, new LoanRequestDTO(1L, START_DATE, 1)))
+                .isInstanceOf(LoanLimitExceededException.class);
+        loanService.repayLoan(loanId, EMAIL, new PaymentRequestDTO(START_DATE, 15000L));
+
+        // rejected requests do not use up loan ids
+        assertThat(loanService.requestLoan(EMAIL, new LoanRequestDTO(40000L, START_DATE, 2)).getLoanId())
+                .isEqualTo(other.getLoanId() + 1);
+        assertThatThrownBy(() -> loanService.requestLoan(EMAIL, new LoanRequestDTO(1L, START_DATE, 1)))
+                .isInstanceOf(LoanLimitExceededException.class);
+    }
+
+    @Test
+    public void givenRepaymentsReportNextPendingInstallmentAndPaidAmount() throws Exception {
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(10000L, START_DATE, 3));
+        loanService.approveLoan(loan.getLoanId());
+
+        assertThat(loan.getPaidAmount()).isZero();
+        assertThat(loan.getNextDueDate()).isEqualTo(START_DATE.plusDays(7));
+        assertThat(loan.getNextInstallmentAmount()).isEqualTo(3334L);
+
+        LocalDate paymentDate = START_DATE.plusDays(2);
+        LoanResponseDTO repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL,
+                new PaymentRequestDTO(paymentDate, 5000L));
+        Payment nextPayment = repaidLoan.getPayments().get(1);
+
+        assertThat(repaidLoan.getPaidAmount()).isEqualTo(5000L);
+        assertThat(repaidLoan.getPaidInstallments()).isEqualTo(1);
+        assertThat(repaidLoan.getNextDueDate()).isEqualTo(nextPayment.getPaymentDate());
+        assertThat(repaidLoan.getNextInstallmentAmount()).isEqualTo(nextPayment.getAmount());
+
+        loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 2500L));
+        repaidLoan = loanService.repayLoan(loan.getLoanId(), EMAIL, new PaymentRequestDTO(paymentDate, 2500L));
+
+        assertThat(repaidLoan.getPaidAmount()).isEqualTo(10000L);
+        assertThat(repaidLoan.getPaidInstallments()).isEqualTo(3);
+        assertThat(repaidLoan.getNextDueDate()).isNull();
+        assertThat(repaidLoan.getNextInstallmentAmount()).isNull();
+    }
+
+    @Test
+    public void givenConcurrentLoanRequestsAssignUniqueIds() throws Exception {
+        List<Callable<List<Integer>>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                List<Integer> loanIds = new ArrayList<>();
+                for (int i = 0; i < 250; i++) {
+                    loanIds.add(loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId());
+                }
+                return loanIds;
+            });
+        }
+        Set<Integer> loanIds = new HashSet<>();
+        for (Future<List<Integer>> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+            loanIds.addAll(result.get());
+        }
+
+        assertThat(loanIds).hasSize(THREADS * 250);
+        assertThat(loanService.getAllLoansByEmail(EMAIL)).hasSize(THREADS * 250);
+    }
+
+    @Test
+    public void givenConcurrentRepaymentsOnSameLoanApplyEachInstallmentOnce() throws Exception {
+        LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(10000000L, START_DATE, 100));
+        loanService.approveLoan(loan.getLoanId());
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                int applied = 0;
+                for (int i = 0; i < 13; i++) {
+                    if (loanService.repayLoan(loan.getLoanId(), EMAIL,
+                            new PaymentRequestDTO(START_DATE, 100000L)) != null) {
+                        applied++;
+                    }
+                }
+                return applied;
+            });
+        }
+        int applied = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+            applied += result.get();
+        }
+
+        LoanResponseDTO repaidLoan = loanService.getLoanByIdAndEmail(loan.getLoanId(), EMAIL);
+        assertThat(applied).isEqualTo(100);
+        assertThat(repaidLoan.getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(repaidLoan.getRemainingBalance()).isZero();
+        assertThat(repaidLoan.getPayments()).hasSize(100)
+                .allMatch(payment -> payment.getPaymentStatus().equals(PaymentStatus.PAID));
+    }
+
+    @Test
+    public void givenConcurrentRepaymentsOnDifferentLoansApplyAllOfThem() throws Exception {
+        List<Integer> loanIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            LoanResponseDTO loan = loanService.requestLoan(EMAIL, new LoanRequestDTO(500000L, START_DATE, 50));
+            loanService.approveLoan(loan.getLoanId());
+            loanIds.add(loan.getLoanId());
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Integer loanId : loanIds) {
+            tasks.add(() -> {
+                for (int i = 0; i < 25; i++) {
+                    loanService.repayLoan(loanId, EMAIL, new PaymentRequestDTO(START_DATE, 10000L));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+            result.get();
+        }
+
+        assertThat(loanService.getAllLoansByEmail(EMAIL)).hasSize(THREADS)
+                .allMatch(loan -> loan.getRemainingBalance() == 250000L);
+    }
+
+    @Test
+    public void givenRepaymentBatchApplyEachLoansRepaymentsInOrder() throws Exception {
+        LoanResponseDTO first = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+        LoanResponseDTO second = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+        LoanResponseDTO pending = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+        loanService.approveLoan(first.getLoanId());
+        loanService.approveLoan(second.getLoanId());
+
+        List<RepaymentResponseDTO> results = loanService.repayLoans(List.of(
+                new RepaymentRequestDTO(first.getLoanId(), EMAIL, START_DATE, 25000L),
+                new RepaymentRequestDTO(second.getLoanId(), EMAIL, START_DATE, 40000L),
+                new RepaymentRequestDTO(first.getLoanId(), "other@example.com", START_DATE, 25000L),
+                new RepaymentRequestDTO(first.getLoanId(), EMAIL, START_DATE, 75000L),
+                new RepaymentRequestDTO(first.getLoanId(), EMAIL, START_DATE, 25000L),
+                new RepaymentRequestDTO(pending.getLoanId(), EMAIL, START_DATE, 25000L),
+                new RepaymentRequestDTO(999, EMAIL, START_DATE, 25000L),
+                new RepaymentRequestDTO(second.getLoanId(), EMAIL, START_DATE, -1L))).join();
+
+        assertThat(results).extracting(RepaymentResponseDTO::getResult).containsExactly(
+                RepaymentResult.APPLIED, RepaymentResult.APPLIED, RepaymentResult.NOT_FOUND,
+                RepaymentResult.APPLIED, RepaymentResult.REJECTED, RepaymentResult.REJECTED,
+                RepaymentResult.NOT_FOUND, RepaymentResult.INVALID);
+        assertThat(results.get(0).getRemainingBalance()).isEqualTo(75000L);
+        assertThat(results.get(3).getLoanStatus()).isEqualTo(LoanStatus.PAID);
+        assertThat(loanService.getLoanByIdAndEmail(second.getLoanId(), EMAIL).getRemainingBalance())
+                .isEqualTo(60000L);
+    }
+
+    @Test
+    public void givenApprovalBatchApproveMatchingPendingLoansAndReportFailedIds() throws Exception {
+        int small = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId();
+        int large = loanService.requestLoan(EMAIL, new LoanRequestDTO(900000L, START_DATE, 4)).getLoanId();
+        int late = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE.plusMonths(1), 4))
+                .getLoanId();
+        int approved = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId();
+        loanService.approveLoan(approved);
+
+        ApprovalResponseDTO byIds = loanService.approveLoans(
+                new ApprovalRequestDTO(List.of(small, approved, 999), 500000L, null, null)).join();
+
+        assertThat(byIds.getApprovedLoanIds()).containsExactly(small);
+        assertThat(byIds.getFailedLoanIds()).containsExactly(approved, 999);
+
+        ApprovalResponseDTO byFilter = loanService.approveLoans(
+                new ApprovalRequestDTO(null, null, START_DATE, START_DATE.plusDays(7))).join();
+
+        assertThat(byFilter.getApprovedLoanIds()).containsExactly(large);
+        assertThat(byFilter.getFailedLoanIds()).isEmpty();
+        assertThat(loanService.getAllPendingLoans()).extracting(LoanResponseDTO::getLoanId).containsExactly(late);
+    }
+
+    @Test
+    public void givenCursorAndFiltersPageThroughMatchingLoans() throws Exception {
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            matching.add(loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId());
+            loanService.requestLoan(EMAIL, new LoanRequestDTO(900000L, START_DATE, 4));
+        }
+        loanService.approveLoan(matching.remove(2));
+        loanService.requestLoan("other@example.com", new LoanRequestDTO(100000L, START_DATE, 4));
+
+        LoanQueryDTO query = new LoanQueryDTO(null, 2, LoanStatus.PENDING, null, new BigDecimal("5000.00"),
+                START_DATE, null, false);
+        List<Integer> loanIds = new ArrayList<>();
+        int pages = 0;
+        LoanPageDTO page;
+        do {
+            page = loanService.getLoansByEmail(EMAIL, query);
+            assertThat(page.getLoans()).hasSizeLessThanOrEqualTo(2).allMatch(loan -> loan.getPayments() == null);
+            page.getLoans().forEach(loan -> loanIds.add(loan.getLoanId()));
+            query.setCursor(page.getNextCursor());
+            pages++;
+        } while (page.getNextCursor() != null);
+
+        assertThat(loanIds).isEqualTo(matching);
+        assertThat(pages).isEqualTo(3);
+        assertThat(loanService.getPendingLoans(new LoanQueryDTO(matching.get(1), 1, null, null, null, null, null,
+                true)).getLoans()).extracting(LoanResponseDTO::getLoanId).containsExactly(matching.get(1) + 1);
+    }
+
+    @Test
+    public void givenNoLimitOrCursorListAllLoansElsePageWithoutEmptyPages() throws Exception {
+        for (int i = 0; i < LoanServiceImpl.MAX_SCANNED_PER_PAGE; i++) {
+            loanService.requestLoan(EMAIL, new LoanRequestDTO(900000L, START_DATE, 1));
+        }
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < LoanValidator.DEFAULT_PAGE_SIZE + 1; i++) {
+            matching.add(loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 1)).getLoanId());
+        }
+        LoanQueryDTO query = new LoanQueryDTO();
+        query.setMaxAmount(new BigDecimal("5000.00"));
+
+        LoanPageDTO page = loanService.getLoansByEmail(EMAIL, query);
+
+        assertThat(page.getLoans()).extracting(LoanResponseDTO::getLoanId).isEqualTo(matching);
+        assertThat(page.getNextCursor()).isNull();
+
+        // past the scan bound a page is only cut short once it holds a loan
+        query.setCursor(0);
+        page = loanService.getLoansByEmail(EMAIL, query);
+
+        assertThat(page.getLoans()).extracting(LoanResponseDTO::getLoanId).containsExactly(matching.get(0));
+        assertThat(page.getNextCursor()).isEqualTo(matching.get(0));
+
+        query.setCursor(page.getNextCursor());
+        page = loanService.getLoansByEmail(EMAIL, query);
+
+        assertThat(page.getLoans()).extracting(LoanResponseDTO::getLoanId)
+                .isEqualTo(matching.subList(1, LoanValidator.DEFAULT_PAGE_SIZE + 1));
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(loanService.getAllLoansByEmail(EMAIL))
+                .hasSize(LoanServiceImpl.MAX_SCANNED_PER_PAGE + matching.size());
+    }
+
+    @Test
+    public void givenStatusExportOnlyLoansInThatStatus() throws Exception {
+        int approved = loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4)).getLoanId();
+        loanService.requestLoan(EMAIL, new LoanRequestDTO(100000L, START_DATE, 4));
+        loanService.approveLoan(approved);
+        List<LoanResponseDTO> exported = new ArrayList<>();
+
+        loanService.exportLoans(LoanStatus.APPROVED, false, exported::add);
+
+        assertThat(exported).extracting(LoanResponseDTO::getLoanId).containsExactly(approved);
+        assertThat(exported.get(0).getPayments()).isNull();
+        exported.clear();
+        loanService.exportLoans(null, true, exported::add);
+        assertThat(exported).hasSize(2).allMatch(loan -> loan.getPayments().size() == 4);
+    }
+}
@@ -3,25 +3,38 @@ package com.aspire.mini.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.modelmapper.ModelMapper;
 
+import com.aspire.mini.dto.response.UserResponseDTO;
 import com.aspire.mini.model.User;
+import com.aspire.mini.persistence.impl.NoOpJournal;
+import com.aspire.mini.repository.impl.InMemoryUserRepository;
 import com.aspire.mini.service.impl.UserServiceImpl;
 import com.aspire.mini.utility.AppUtils;
+import com.aspire.mini.utility.PasswordHasher;
 
 public class UserServiceImplTests {
 
 	private UserService userService;
 
+	private InMemoryUserRepository userRepository;
+
+	private AppUtils appUtils;
+
 	@BeforeEach
 	public void setUp() {
-		AppUtils appUtils = new AppUtils(1, "fhbfjsbfjjhewjfbefbjhwehjfrebfjfhbjherbhjerbwhjfbhjrefb",
+		appUtils = new AppUtils(1, "fhbfjsbfjjhewjfbefbjhwehjfrebfjfhbjherbhjerbwhjfbhjrefb",
 				"http://mini-aspire.com");
-		ModelMapper modelMapper = new ModelMapper();
-		userService = new UserServiceImpl(new ArrayList<User>(), appUtils, modelMapper);
+		userRepository = new InMemoryUserRepository();
+		userService = new UserServiceImpl(userRepository, appUtils, new NoOpJournal(), new PasswordHasher(1000));
 	}
 
 	@Test
@@ -36,4 +49,58 @@ public class UserServiceImplTests {
 		assertThat(userService.createUser("sample@example.com", "wordpa$$", false)).isNull();
 	}
 
+	@Test
+	public void givenDuplicateUserWithDifferentCaseFailUserCreation() throws Exception {
+		userService.createUser("sample@example.com", "pa$$word", false);
+		assertThat(userService.createUser(" Sample@Example.com", "wordpa$$", false)).isNull();
+		assertThat(userService.authenticateUser("SAMPLE@example.com", "pa$$word")).isNotEqualTo(AppUtils.USER_DOES_NOT_EXIST);
+	}
+
+	@Test
+	public void givenConcurrentDuplicateUsersCreateExactlyOne() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<UserResponseDTO>> tasks = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				tasks.add(() -> userService.createUser("sample@example.com", "pa$$word", false));
+			}
+			int created = 0;
+			for (Future<UserResponseDTO> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+				if (result.get() != null)
+					created++;
+			}
+			assertThat(created).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void givenValidCredentialsAuthenticateReturnsVerifiableToken() throws Exception {
+		userService.createUser("sample@example.com", "pa$$word", true);
+		String token = userService.authenticateUser("sample@example.com", "pa$$word");
+		assertThat(appUtils.validateJWTAndReturnClaims(token).getBody().getSubject()).isEqualTo("sample@example.com");
+		assertThat(appUtils.validateJWTAndReturnClaims(token).getBody().get("role")).isEqualTo("ADMIN");
+		assertThat(appUtils.getTokenCacheHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void givenInvalidCredentialsAuthenticateReturnsErrorMessage() throws Exception {
+		userService.createUser("sample@example.com", "pa$$word", false);
+		assertThat(userService.authenticateUser("sample@example.com", "wordpa$$")).isEqualTo(AppUtils.INVALID_CREDENTIALS);
+		assertThat(userService.authenticateUser("other@example.com", "pa$$word")).isEqualTo(AppUtils.USER_DOES_NOT_EXIST);
+	}
+
+	@Test
+	public void givenHashWithOtherIterationCountAuthenticateWithIt() throws Exception {
+		String hash = new PasswordHasher(2000).hash("pa$$word");
+		userRepository.saveIfAbsent(new User("sample@example.com", hash, false));
+
+		assertThat(hash).startsWith("pbkdf2-sha256$2000$");
+		assertThat(new PasswordHasher(1000).hash("pa$$word")).startsWith("pbkdf2-sha256$1000$");
+		assertThat(userService.authenticateUser("sample@example.com", "wordpa$$")).isEqualTo(AppUtils.INVALID_CREDENTIALS);
+		assertThat(appUtils.validateJWTAndReturnClaims(userService.authenticateUser("sample@example.com", "pa$$word")))
+				.isNotNull();
+	}
+
 }
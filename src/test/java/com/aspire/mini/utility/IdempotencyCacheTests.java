@@ -0,0 +1,136 @@
+package com.aspire.mini.utility;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+public class IdempotencyCacheTests {
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    public void givenRetryWithSameKeyReturnStoredResponseWithoutRunningAgain() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 60);
+
+        ResponseEntity<?> first = cache.execute("user", "key", "request", this::create);
+        ResponseEntity<?> retry = cache.execute("user", "key", "request", this::create);
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeaders().containsKey(IdempotencyCache.REPLAYED_HEADER)).isFalse();
+    }
+
+    @Test
+    public void givenKeyReusedForDifferentRequestOrScopeRejectOrRunSeparately() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 60);
+        cache.execute("user", "key", "request", this::create);
+
+        assertThat(cache.execute("user", "key", "other request", this::create).getStatusCode())
+                .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(cache.execute("other user", "key", "request", this::create).getBody()).isEqualTo(2);
+        assertThat(cache.execute("user", null, "request", this::create).getBody()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenServerErrorOrFailedActionReplayErrorWithoutRunningAgain() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 60);
+
+        cache.execute("user", "key", "request", () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.internalServerError().build();
+        });
+        ResponseEntity<?> failed = cache.execute("user", "other key", "request", () -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("journal failed");
+        });
+
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(cache.execute("user", "key", "request", this::create).getStatusCode())
+                .isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(cache.execute("user", "other key", "request", this::create).getStatusCode())
+                .isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenAsyncRetryWhileFirstRequestRunsReturnItsResponseWithoutRunningAgain() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 60);
+        CompletableFuture<ResponseEntity<?>> pending = new CompletableFuture<>();
+
+        CompletableFuture<ResponseEntity<?>> first = cache.executeAsync("user", "key", "request", () -> {
+            executions.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<ResponseEntity<?>> retry = cache.executeAsync("user", "key", "request",
+                () -> CompletableFuture.completedFuture(create()));
+
+        assertThat(retry).isNotDone();
+        pending.complete(new ResponseEntity<String>("repaid", HttpStatus.OK));
+
+        assertThat(first.get().getBody()).isEqualTo("repaid");
+        assertThat(retry.get().getBody()).isEqualTo("repaid");
+        assertThat(retry.get().getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenRetryWhileFirstRequestRunsWaitForItsResponse() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 60);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<?>> first = executor.submit(() -> cache.execute("user", "key", "request", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return create();
+            }));
+            started.await();
+            Thread retry = new Thread(() -> cache.execute("user", "key", "request", this::create));
+            retry.start();
+            retry.join(100);
+            assertThat(retry.isAlive()).isTrue();
+
+            release.countDown();
+            retry.join(TimeUnit.SECONDS.toMillis(10));
+
+            assertThat(first.get().getBody()).isEqualTo(1);
+            assertThat(executions.get()).isEqualTo(1);
+            assertThat(cache.getReplays()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenFullCacheEvictCompletedEntries() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+
+        for (int i = 0; i < 100; i++) {
+            cache.execute("user", "key" + i, "request", this::create);
+        }
+
+        assertThat(cache.getEntries()).isLessThanOrEqualTo(10);
+        assertThat(cache.execute("user", "key99", "request", this::create).getBody()).isEqualTo(100);
+    }
+
+    private ResponseEntity<?> create() {
+        return new ResponseEntity<Integer>(executions.incrementAndGet(), HttpStatus.CREATED);
+    }
+}